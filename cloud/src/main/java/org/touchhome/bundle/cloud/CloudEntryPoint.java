@@ -6,8 +6,11 @@ import org.springframework.stereotype.Component;
 import org.touchhome.bundle.api.BundleEntryPoint;
 import org.touchhome.bundle.api.EntityContext;
 import org.touchhome.bundle.api.ui.BellNotification;
+import org.touchhome.bundle.cloud.netty.impl.NettyClientService;
+import org.touchhome.bundle.cloud.providers.SshCloudProvider;
 import org.touchhome.bundle.cloud.setting.ConsoleCloudProviderSetting;
 
+import java.util.Optional;
 import java.util.Set;
 
 @Log4j2
@@ -16,11 +19,20 @@ import java.util.Set;
 public class CloudEntryPoint implements BundleEntryPoint {
 
     private final EntityContext entityContext;
+    private final SshCloudProvider sshCloudProvider;
+    // empty while netty tunnel service is disabled
+    private final Optional<NettyClientService> nettyClientService;
 
     public void init() {
 
     }
 
+    @Override
+    public void destroy() {
+        sshCloudProvider.destroy();
+        nettyClientService.ifPresent(NettyClientService::destroy);
+    }
+
     @Override
     public int order() {
         return 800;
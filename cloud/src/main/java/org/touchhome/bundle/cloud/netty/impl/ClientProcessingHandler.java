@@ -2,15 +2,58 @@ package org.touchhome.bundle.cloud.netty.impl;
 
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.timeout.IdleState;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.util.concurrent.ScheduledFuture;
 import lombok.RequiredArgsConstructor;
-import lombok.SneakyThrows;
 import lombok.extern.log4j.Log4j2;
 
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Dispatch tunnel requests. Ping answered directly on event loop, rest requests executed by worker pool and
+ * responses written as soon as ready, so they may be sent in different order then requests received (server
+ * matches them by requestId). When maxConcurrentRequests requests are in flight, channel stops reading until
+ * some of them finished.
+ * Chunked request bodies are passed to running request as they arrive, reading pauses while body buffer is full.
+ * Reading continues over the limit while admitted requests wait for body chunks, but new requests read meanwhile
+ * are not dispatched: requests without body wait in a queue of maxConcurrentRequests, others are rejected.
+ * Large responses are streamed as chunks while handler still writes them, writing worker waits while channel
+ * isn't writable.
+ */
 @Log4j2
 @RequiredArgsConstructor
 public class ClientProcessingHandler extends ChannelInboundHandlerAdapter {
 
+    private static final long PING_ANSWER_TIMEOUT_SECONDS = 10;
+
     private final DispatcherServletService dispatcherServletService;
+    private final ExecutorService workerPool;
+    private final int maxConcurrentRequests;
+    private final long requestTimeoutMillis;
+    private final TunnelCompression compression;
+
+    private final Map<Integer, PendingRequest> pendingRequests = new ConcurrentHashMap<>();
+    private final Map<Integer, ServletInputStreamAdapter> requestBodies = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger pausedRequestBodies = new AtomicInteger();
+    // requests read while limit reached, event loop only
+    private final Deque<SocketRestRequestModel> deferredRequests = new ArrayDeque<>();
+    private final Object writabilityLock = new Object();
+    // event loop only
+    private long lastReadAt;
+    private ScheduledFuture<?> pingAnswerCheck;
 
     @Override
     public void handlerAdded(ChannelHandlerContext ctx) {
@@ -23,31 +66,301 @@ public class ClientProcessingHandler extends ChannelInboundHandlerAdapter {
     }
 
     @Override
-    @SneakyThrows
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        if (!compression.getOffer().isEmpty()) {
+            ctx.writeAndFlush(new SocketHandshakeModel(compression.getOffer(), null));
+        }
+        super.channelActive(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        compression.release();
+        for (PendingRequest pendingRequest : pendingRequests.values()) {
+            pendingRequest.cancel();
+        }
+        pendingRequests.clear();
+        for (ServletInputStreamAdapter requestBody : requestBodies.values()) {
+            requestBody.fail(new IOException("Tunnel closed"));
+        }
+        requestBodies.clear();
+        deferredRequests.clear();
+        if (pingAnswerCheck != null) {
+            pingAnswerCheck.cancel(false);
+        }
+        synchronized (writabilityLock) {
+            writabilityLock.notifyAll();
+        }
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().isWritable()) {
+            synchronized (writabilityLock) {
+                writabilityLock.notifyAll();
+            }
+        }
+        super.channelWritabilityChanged(ctx);
+    }
+
+    /**
+     * Heartbeat driven by IdleStateHandler. Ping server when nothing was sent for a while. When server is silent
+     * ping it too and drop half-open connection only if nothing arrives within PING_ANSWER_TIMEOUT_SECONDS.
+     */
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (evt instanceof IdleStateEvent) {
+            IdleState state = ((IdleStateEvent) evt).state();
+            if (state == IdleState.WRITER_IDLE) {
+                ctx.writeAndFlush(new SocketPingRequestModel());
+            } else if (state == IdleState.READER_IDLE && (pingAnswerCheck == null || pingAnswerCheck.isDone())) {
+                log.debug("Cloud server silent. Ping it");
+                long pingSentAt = System.nanoTime();
+                ctx.writeAndFlush(new SocketPingRequestModel());
+                pingAnswerCheck = ctx.executor().schedule(() -> {
+                    if (lastReadAt - pingSentAt < 0) {
+                        log.warn("Cloud server not answered ping. Close connection");
+                        ctx.close();
+                    }
+                }, PING_ANSWER_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            }
+            return;
+        }
+        super.userEventTriggered(ctx, evt);
+    }
+
+    @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        lastReadAt = System.nanoTime();
         SocketBaseModel socketBaseModel = (SocketBaseModel) msg;
-        log.info("Client netty received: " + socketBaseModel);
+        log.debug("Client netty received: " + socketBaseModel);
 
-        SocketBaseModel responseModel = null;
         if (socketBaseModel instanceof SocketPingRequestModel) {
-            responseModel = new SocketPingResponseModel();
+            ctx.writeAndFlush(new SocketPingResponseModel());
+        } else if (socketBaseModel instanceof SocketPingResponseModel) {
+            log.debug("Cloud heartbeat answered");
         } else if (socketBaseModel instanceof SocketRestRequestModel) {
-            responseModel = this.handleSocketRestRequest((SocketRestRequestModel) socketBaseModel);
+            this.admitSocketRestRequest(ctx, (SocketRestRequestModel) socketBaseModel);
+        } else if (socketBaseModel instanceof SocketHandshakeModel) {
+            compression.accept(((SocketHandshakeModel) socketBaseModel).getCompression());
+        } else if (socketBaseModel instanceof SocketRestRequestChunkModel) {
+            this.handleRequestChunk(ctx, (SocketRestRequestChunkModel) socketBaseModel);
+        } else {
+            throw new RuntimeException("No handler found for model: " + msg);
         }
+    }
 
-        if (responseModel == null) {
-            throw new RuntimeException("No handler found for model: " + msg);
+    /**
+     * Dispatch request if limit allows. Otherwise reading continues only for bodies of admitted requests, so new
+     * request is deferred or rejected.
+     */
+    private void admitSocketRestRequest(ChannelHandlerContext ctx, SocketRestRequestModel model) {
+        if (inFlight.get() < maxConcurrentRequests && deferredRequests.isEmpty()) {
+            submitSocketRestRequest(ctx, model);
+        } else if (!model.isChunked() && deferredRequests.size() < maxConcurrentRequests) {
+            deferredRequests.add(model);
+        } else {
+            // body chunks of rejected request are dropped as chunks of unknown request
+            log.warn("Tunnel busy. Reject request <{}> {}", model.getRequestId(), model.getPath());
+            ctx.writeAndFlush(SocketRestResponseModel.ofError(model.getRequestId(),
+                    new RejectedExecutionException("Too many concurrent requests")));
+        }
+    }
+
+    // event loop only
+    private void submitDeferredRequests(ChannelHandlerContext ctx) {
+        while (!deferredRequests.isEmpty() && inFlight.get() < maxConcurrentRequests && ctx.channel().isActive()) {
+            submitSocketRestRequest(ctx, deferredRequests.poll());
+        }
+    }
+
+    private void submitSocketRestRequest(ChannelHandlerContext ctx, SocketRestRequestModel model) {
+        ServletInputStreamAdapter requestBody = null;
+        if (model.isChunked()) {
+            requestBody = new ServletInputStreamAdapter(workerPool, new ServletInputStreamAdapter.FlowControl() {
+                @Override
+                public void pause() {
+                    pausedRequestBodies.incrementAndGet();
+                    updateAutoRead(ctx);
+                }
+
+                @Override
+                public void resume() {
+                    pausedRequestBodies.decrementAndGet();
+                    updateAutoRead(ctx);
+                }
+            });
+            requestBodies.put(model.getRequestId(), requestBody);
+        }
+        if (inFlight.incrementAndGet() >= maxConcurrentRequests) {
+            log.debug("Tunnel reached {} concurrent requests. Pause reading", maxConcurrentRequests);
+        }
+        updateAutoRead(ctx);
+        PendingRequest pendingRequest = new PendingRequest(model.getRequestId());
+        pendingRequests.put(model.getRequestId(), pendingRequest);
+
+        pendingRequest.timeout = ctx.executor().schedule(() -> {
+            if (complete(ctx, pendingRequest, SocketRestResponseModel.ofError(model.getRequestId(),
+                    new TimeoutException("Request timeout after " + requestTimeoutMillis + "ms")))) {
+                log.warn("Tunnel request <{}> {} timed out", model.getRequestId(), model.getPath());
+                if (pendingRequest.future != null) {
+                    pendingRequest.future.cancel(true);
+                }
+            }
+        }, requestTimeoutMillis, TimeUnit.MILLISECONDS);
+        ServletInputStreamAdapter body = requestBody;
+        try {
+            pendingRequest.future = workerPool.submit(() -> {
+                SocketRestResponseModel responseModel;
+                try {
+                    responseModel = handleSocketRestRequest(model, body, new ChannelChunkWriter(ctx, pendingRequest));
+                } finally {
+                    if (body != null && requestBodies.remove(model.getRequestId(), body) && !body.isFinished()) {
+                        // rest of body will be dropped
+                        body.fail(new IOException("Request already completed"));
+                    }
+                }
+                if (pendingRequest.streaming) {
+                    if (!pendingRequest.streamFinished && ctx.channel().isActive()) {
+                        ctx.writeAndFlush(SocketRestResponseChunkModel.ofError(model.getRequestId(),
+                                new IllegalStateException(responseModel == null ? "Stream interrupted" : responseModel.getError())));
+                    }
+                    release(ctx);
+                } else {
+                    complete(ctx, pendingRequest, responseModel);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            if (body != null) {
+                requestBodies.remove(model.getRequestId(), body);
+            }
+            complete(ctx, pendingRequest, SocketRestResponseModel.ofError(model.getRequestId(), ex));
+        }
+    }
+
+    /**
+     * Write response if request wasn't completed yet by timeout or worker
+     *
+     * @return true if this call completed request
+     */
+    private boolean complete(ChannelHandlerContext ctx, PendingRequest pendingRequest, SocketRestResponseModel responseModel) {
+        if (!pendingRequests.remove(pendingRequest.requestId, pendingRequest)) {
+            return false;
+        }
+        pendingRequest.timeout.cancel(false);
+        ctx.writeAndFlush(responseModel);
+        release(ctx);
+        return true;
+    }
+
+    private void handleRequestChunk(ChannelHandlerContext ctx, SocketRestRequestChunkModel chunk) {
+        ServletInputStreamAdapter requestBody = chunk.isLast() ?
+                requestBodies.remove(chunk.getRequestId()) : requestBodies.get(chunk.getRequestId());
+        if (requestBody == null) {
+            log.debug("Drop body chunk of completed request <{}>", chunk.getRequestId());
+            return;
+        }
+        requestBody.offer(chunk.getData(), chunk.isLast());
+        if (chunk.isLast()) {
+            updateAutoRead(ctx);
+        }
+    }
+
+    private void release(ChannelHandlerContext ctx) {
+        inFlight.decrementAndGet();
+        updateAutoRead(ctx);
+    }
+
+    /**
+     * Read tunnel while there are free workers and no request body buffer is full. Requests waiting for body
+     * chunks must get them, so concurrency limit doesn't pause reading while any body is incomplete; new requests
+     * read meanwhile are held by admitSocketRestRequest.
+     */
+    private void updateAutoRead(ChannelHandlerContext ctx) {
+        if (ctx.executor().inEventLoop()) {
+            submitDeferredRequests(ctx);
+            boolean autoRead = pausedRequestBodies.get() == 0 &&
+                    (inFlight.get() < maxConcurrentRequests || !requestBodies.isEmpty());
+            if (ctx.channel().config().isAutoRead() != autoRead) {
+                ctx.channel().config().setAutoRead(autoRead);
+            }
+        } else {
+            ctx.executor().execute(() -> updateAutoRead(ctx));
         }
+    }
 
-        ctx.writeAndFlush(responseModel).sync();
+    private void awaitWritable(ChannelHandlerContext ctx) throws IOException {
+        synchronized (writabilityLock) {
+            while (true) {
+                if (!ctx.channel().isActive()) {
+                    throw new IOException("Tunnel closed");
+                }
+                if (ctx.channel().isWritable()) {
+                    return;
+                }
+                try {
+                    writabilityLock.wait(1000);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for tunnel");
+                }
+            }
+        }
     }
 
-    private SocketRestResponseModel handleSocketRestRequest(SocketRestRequestModel model) {
+    private SocketRestResponseModel handleSocketRestRequest(SocketRestRequestModel model, ServletInputStreamAdapter requestBody,
+                                                            ServletOutputStreamAdapter.ChunkWriter chunkWriter) {
         try {
-            return dispatcherServletService.doService(model);
+            return dispatcherServletService.doService(model, requestBody, chunkWriter);
         } catch (Exception ex) {
             log.error("Socket dispatcher error while execute request");
             return SocketRestResponseModel.ofError(model.getRequestId(), ex);
         }
     }
+
+    @RequiredArgsConstructor
+    private static class PendingRequest {
+        private final int requestId;
+        private volatile Future<?> future;
+        private volatile ScheduledFuture<?> timeout;
+        // set when response header sent, after that request is completed by end of stream instead of timeout
+        private volatile boolean streaming;
+        private volatile boolean streamFinished;
+
+        void cancel() {
+            if (future != null) {
+                future.cancel(true);
+            }
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
+        }
+    }
+
+    @RequiredArgsConstructor
+    private class ChannelChunkWriter implements ServletOutputStreamAdapter.ChunkWriter {
+        private final ChannelHandlerContext ctx;
+        private final PendingRequest pendingRequest;
+
+        @Override
+        public void writeHeader(SocketRestResponseModel header) throws IOException {
+            if (!pendingRequests.remove(pendingRequest.requestId, pendingRequest)) {
+                throw new IOException("Request <" + pendingRequest.requestId + "> already completed");
+            }
+            pendingRequest.timeout.cancel(false);
+            pendingRequest.streaming = true;
+            awaitWritable(ctx);
+            ctx.writeAndFlush(header);
+        }
+
+        @Override
+        public void writeChunk(SocketRestResponseChunkModel chunk) throws IOException {
+            awaitWritable(ctx);
+            ctx.writeAndFlush(chunk);
+            if (chunk.isLast()) {
+                pendingRequest.streamFinished = true;
+            }
+        }
+    }
 }
@@ -4,39 +4,120 @@ import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.BeanFactoryUtils;
 import org.springframework.context.ApplicationContext;
 import org.springframework.core.annotation.AnnotationAwareOrderComparator;
+import org.springframework.http.HttpMethod;
+import org.springframework.util.DigestUtils;
 import org.springframework.util.ObjectUtils;
 import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.servlet.HandlerAdapter;
 import org.springframework.web.servlet.HandlerExecutionChain;
 import org.springframework.web.servlet.HandlerInterceptor;
 import org.springframework.web.servlet.HandlerMapping;
+import org.touchhome.bundle.api.EntityContext;
+import org.touchhome.bundle.api.entity.BaseEntity;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+import static org.springframework.http.HttpHeaders.ETAG;
+import static org.springframework.http.HttpHeaders.IF_NONE_MATCH;
+
+/**
+ * Executes tunnel requests through spring handler mappings without servlet container.
+ * GET responses get ETag and answered with 304 when client already has same body. Optional response cache
+ * (cloudResponseCache property) is cleared on every entity change. Cached response replaces only handler call,
+ * handler interceptors still run for every request.
+ */
 @Log4j2
 public class DispatcherServletService {
 
     private List<HandlerMapping> handlerMappings;
     private List<HandlerAdapter> handlerAdapters;
 
-    public DispatcherServletService(ApplicationContext context) {
+    private final Map<Class<?>, HandlerAdapter> handlerAdapterCache = new ConcurrentHashMap<>();
+    private final TunnelResponseCache responseCache;
+
+    public DispatcherServletService(ApplicationContext context, EntityContext entityContext) {
         super();
         initHandlerMappings(context);
         initHandlerAdapters(context);
+        if (context.getEnvironment().getProperty("cloudResponseCache", Boolean.class, false)) {
+            this.responseCache = new TunnelResponseCache();
+            entityContext.event().addEntityUpdateListener(BaseEntity.class, "cloud-response-cache", entity -> responseCache.clear());
+        } else {
+            this.responseCache = null;
+        }
     }
 
-    SocketRestResponseModel doService(SocketRestRequestModel socketRestRequestModel) {
-        HttpServletRequestAdapter request = new HttpServletRequestAdapter(socketRestRequestModel);
-        HttpServletResponseAdapter response = new HttpServletResponseAdapter();
+    /**
+     * @param inputStream body of chunked request or null if body within request model
+     * @return response model or null if response has been already streamed through chunkWriter
+     */
+    SocketRestResponseModel doService(SocketRestRequestModel socketRestRequestModel, ServletInputStreamAdapter inputStream,
+                                      ServletOutputStreamAdapter.ChunkWriter chunkWriter) throws IOException {
+        int requestId = socketRestRequestModel.getRequestId();
+        HttpServletRequestAdapter request = new HttpServletRequestAdapter(socketRestRequestModel, inputStream);
+        boolean isGet = socketRestRequestModel.getHttpMethod() == HttpMethod.GET;
+
+        String cacheKey = isGet && responseCache != null ? TunnelResponseCache.getKey(socketRestRequestModel) : null;
+        if (cacheKey != null) {
+            SocketRestResponseModel cachedResponse = responseCache.get(cacheKey, requestId);
+            if (cachedResponse != null) {
+                HttpServletResponseAdapter response = new HttpServletResponseAdapter(requestId, chunkWriter);
+                if (preHandle(request, response)) {
+                    return notModified(request, cachedResponse);
+                }
+                // interceptor rejected request and wrote its own response
+                return response.finish() ? null : SocketRestResponseModel.ofServletResponse(requestId, response);
+            }
+        }
 
+        HttpServletResponseAdapter response = new HttpServletResponseAdapter(requestId, chunkWriter);
         dispatch(request, response);
 
-        return SocketRestResponseModel.ofServletResponse(socketRestRequestModel.getRequestId(), response);
+        if (response.finish()) {
+            return null;
+        }
+        SocketRestResponseModel responseModel = SocketRestResponseModel.ofServletResponse(requestId, response);
+        if (isGet && isOk(responseModel) && responseModel.getResponse() != null) {
+            if (responseModel.getHeader(ETAG) == null) {
+                responseModel.putHeader(ETAG, "\"0" + DigestUtils.md5DigestAsHex(responseModel.getResponse()) + "\"");
+            }
+            if (cacheKey != null) {
+                responseCache.put(cacheKey, responseModel);
+            }
+            return notModified(request, responseModel);
+        }
+        return responseModel;
+    }
+
+    private static boolean isOk(SocketRestResponseModel responseModel) {
+        return responseModel.getError() == null && (responseModel.getStatus() == 0 || responseModel.getStatus() == 200);
+    }
+
+    /**
+     * @return 304 response if client's If-None-Match contains response ETag, otherwise response itself
+     */
+    private static SocketRestResponseModel notModified(HttpServletRequest request, SocketRestResponseModel responseModel) {
+        String etag = responseModel.getHeader(ETAG);
+        String ifNoneMatch = request.getHeader(IF_NONE_MATCH);
+        if (etag != null && ifNoneMatch != null) {
+            for (String clientEtag : ifNoneMatch.split(",")) {
+                clientEtag = clientEtag.trim();
+                if (clientEtag.startsWith("W/")) {
+                    clientEtag = clientEtag.substring(2);
+                }
+                if (clientEtag.equals(etag) || clientEtag.equals("*")) {
+                    return SocketRestResponseModel.ofNotModified(responseModel.getRequestId(), etag);
+                }
+            }
+        }
+        return responseModel;
     }
 
     private void dispatch(HttpServletRequestAdapter request, HttpServletResponse response) {
@@ -74,6 +155,24 @@ public class DispatcherServletService {
         }
     }
 
+    /**
+     * Run interceptors of request handler without invoking handler itself
+     *
+     * @return true if request may be answered
+     */
+    private boolean preHandle(HttpServletRequest request, HttpServletResponse response) {
+        try {
+            HandlerExecutionChain mappedHandler = getHandler(request);
+            if (mappedHandler == null) {
+                throw new RuntimeException("No handler found");
+            }
+            return applyPreHandle(request, response, mappedHandler);
+        } catch (Exception ex) {
+            log.error("error: " + ex.getMessage(), ex);
+            return false;
+        }
+    }
+
     private boolean applyPreHandle(HttpServletRequest request, HttpServletResponse response, HandlerExecutionChain mappedHandler) throws Exception {
         HandlerInterceptor[] interceptors = mappedHandler.getInterceptors();
         int interceptorIndex = 0;
@@ -105,9 +204,14 @@ public class DispatcherServletService {
     }
 
     private HandlerAdapter getHandlerAdapter(Object handler) throws ServletException {
+        HandlerAdapter cachedAdapter = handlerAdapterCache.get(handler.getClass());
+        if (cachedAdapter != null && cachedAdapter.supports(handler)) {
+            return cachedAdapter;
+        }
         if (this.handlerAdapters != null) {
             for (HandlerAdapter adapter : this.handlerAdapters) {
                 if (adapter.supports(handler)) {
+                    handlerAdapterCache.put(handler.getClass(), adapter);
                     return adapter;
                 }
             }
@@ -7,6 +7,9 @@ import javax.servlet.*;
 import javax.servlet.http.*;
 import java.io.BufferedReader;
 import java.security.Principal;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.*;
 
 import static org.springframework.http.HttpHeaders.CONTENT_LENGTH;
@@ -14,60 +17,30 @@ import static org.springframework.http.HttpHeaders.CONTENT_TYPE;
 
 public class HttpServletRequestAdapter implements HttpServletRequest {
 
-    private final Map<String, Object> header = new HashMap<>();
+    private final Map<String, Object> header = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
     private final SocketRestRequestModel socketRestRequestModel;
     private final Map<String, Object> attributes = new HashMap<>();
     @Getter
-    private ServletInputStream inputStream;
+    private ServletInputStreamAdapter inputStream;
     private Map<String, String[]> parameters;
     private String _characterEncoding = "UTF-8";
 
-    HttpServletRequestAdapter(SocketRestRequestModel socketRestRequestModel) {
+    HttpServletRequestAdapter(SocketRestRequestModel socketRestRequestModel, ServletInputStreamAdapter inputStream) {
         this.socketRestRequestModel = socketRestRequestModel;
         this.parameters = socketRestRequestModel.getParameters();
         if (this.parameters == null) {
             this.parameters = new HashMap<>();
         }
+        if (socketRestRequestModel.getHeaders() != null) {
+            this.header.putAll(socketRestRequestModel.getHeaders());
+        }
         if (this.socketRestRequestModel.getHttpMethod() != HttpMethod.GET) {
-            this.header.put(CONTENT_LENGTH, this.socketRestRequestModel.getContentLength());
+            this.header.put(CONTENT_LENGTH, String.valueOf(this.socketRestRequestModel.getContentLength()));
             this.header.put(CONTENT_TYPE, this.socketRestRequestModel.getContentType().rawValue);
         }
-        if (this.socketRestRequestModel.getHttpMethod() == HttpMethod.POST) {
-            this.inputStream = new ServletInputStream() {
-                private byte[] content = socketRestRequestModel.getRequest();
-                private int alreadyRead = 0;
-
-                @Override
-                public int read(byte[] b, int off, int len) {
-                    int index = off;
-                    int started = this.alreadyRead;
-                    for (int i = alreadyRead; i < Math.min(len, content.length); i++) {
-                        b[index++] = content[i];
-                    }
-                    this.alreadyRead += index - off;
-                    return this.alreadyRead - started - 1;
-                }
-
-                @Override
-                public int read() {
-                    return alreadyRead == content.length - 1 ? -1 : content[alreadyRead++];
-                }
-
-                @Override
-                public boolean isFinished() {
-                    return alreadyRead == content.length - 1;
-                }
-
-                @Override
-                public boolean isReady() {
-                    return true;
-                }
-
-                @Override
-                public void setReadListener(ReadListener readListener) {
-
-                }
-            };
+        this.inputStream = inputStream;
+        if (this.inputStream == null && this.socketRestRequestModel.getRequest() != null) {
+            this.inputStream = ServletInputStreamAdapter.of(this.socketRestRequestModel.getRequest());
         }
     }
 
@@ -82,8 +55,16 @@ public class HttpServletRequestAdapter implements HttpServletRequest {
     }
 
     @Override
-    public long getDateHeader(String s) {
-        throw new RuntimeException("Not implemented");
+    public long getDateHeader(String key) {
+        String value = getHeader(key);
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException ex) {
+            throw new IllegalArgumentException("Unable to parse date header " + key + ": " + value);
+        }
     }
 
     @Override
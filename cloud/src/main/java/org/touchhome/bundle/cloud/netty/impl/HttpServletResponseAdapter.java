@@ -1,11 +1,18 @@
 package org.touchhome.bundle.cloud.netty.impl;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Locale;
@@ -19,7 +26,25 @@ public class HttpServletResponseAdapter implements HttpServletResponse {
     private String contentType;
     private int status;
     private Map<String, String> headers = new HashMap<>();
-    private ServletOutputStreamAdapter outputStream = new ServletOutputStreamAdapter();
+    private final ServletOutputStreamAdapter outputStream;
+    @Setter(AccessLevel.NONE)
+    private PrintWriter writer;
+
+    HttpServletResponseAdapter(int requestId, ServletOutputStreamAdapter.ChunkWriter chunkWriter) {
+        this.outputStream = new ServletOutputStreamAdapter(requestId, this, chunkWriter);
+    }
+
+    /**
+     * Flush writer and send end of stream if response has been streamed
+     *
+     * @return true if response has been streamed
+     */
+    boolean finish() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        return outputStream.finish();
+    }
 
     @Override
     public void addCookie(Cookie cookie) {
@@ -68,12 +93,12 @@ public class HttpServletResponseAdapter implements HttpServletResponse {
 
     @Override
     public void setDateHeader(String name, long date) {
-
+        setHeader(name, DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(date).atZone(ZoneOffset.UTC)));
     }
 
     @Override
     public void addDateHeader(String name, long date) {
-
+        setDateHeader(name, date);
     }
 
     @Override
@@ -139,7 +164,10 @@ public class HttpServletResponseAdapter implements HttpServletResponse {
 
     @Override
     public PrintWriter getWriter() {
-        return null;
+        if (writer == null) {
+            writer = new PrintWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        }
+        return writer;
     }
 
     @Override
@@ -163,8 +191,11 @@ public class HttpServletResponseAdapter implements HttpServletResponse {
     }
 
     @Override
-    public void flushBuffer() {
-
+    public void flushBuffer() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        outputStream.flushBuffer();
     }
 
     @Override
@@ -174,7 +205,7 @@ public class HttpServletResponseAdapter implements HttpServletResponse {
 
     @Override
     public boolean isCommitted() {
-        return false;
+        return outputStream.isCommitted();
     }
 
     @Override
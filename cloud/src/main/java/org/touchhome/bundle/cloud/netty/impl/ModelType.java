@@ -6,7 +6,16 @@ public enum ModelType {
     PingRequest(SocketPingRequestModel.class),
     PingResponse(SocketPingResponseModel.class),
     RestRequest(SocketRestRequestModel.class),
-    RestResponse(SocketRestResponseModel.class);
+    RestResponse(SocketRestResponseModel.class),
+    // SocketRestResponseModel with raw body after json. Written only by SocketModelEncoder in binaryBody mode
+    RestBinaryResponse(SocketRestResponseModel.class),
+    RestResponseChunk(SocketRestResponseChunkModel.class),
+    // SocketRestResponseChunkModel with raw data after json. Written only by SocketModelEncoder in binaryBody mode
+    RestBinaryResponseChunk(SocketRestResponseChunkModel.class),
+    RestRequestChunk(SocketRestRequestChunkModel.class),
+    Handshake(SocketHandshakeModel.class),
+    Subscribe(SocketSubscribeModel.class),
+    Event(SocketEventModel.class);
 
     @Getter
     private Class<? extends SocketBaseModel> targetClass;
@@ -2,10 +2,14 @@ package org.touchhome.bundle.cloud.netty.impl;
 
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.*;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollSocketChannel;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.ssl.SslHandler;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
 import lombok.extern.log4j.Log4j2;
@@ -16,12 +20,16 @@ import org.touchhome.bundle.api.util.SslUtil;
 import org.touchhome.bundle.api.util.TouchHomeUtils;
 import org.touchhome.bundle.cloud.netty.setting.CloudServerConnectionMessageSetting;
 import org.touchhome.bundle.cloud.netty.setting.CloudServerConnectionStatusSetting;
+import org.touchhome.bundle.cloud.netty.setting.CloudServerMaxConcurrentRequestsSetting;
+import org.touchhome.bundle.cloud.netty.setting.CloudServerRequestTimeoutSetting;
 import org.touchhome.bundle.cloud.netty.setting.CloudServerUrlSetting;
 
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLEngine;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 
 import static org.touchhome.bundle.api.entity.UserEntity.ADMIN_USER;
 
@@ -36,12 +44,49 @@ public class NettyClientService {
     @Value("${serverUseSSl:true}")
     private boolean serverUseSSl;
 
-    private EventLoopGroup workGroup = new NioEventLoopGroup();
+    // send rest response body raw instead of base64 json field
+    @Value("${cloudBinaryBody:false}")
+    private boolean cloudBinaryBody;
+
+    // offer frame compression to server, frames smaller than threshold are sent as is
+    @Value("${cloudCompression:false}")
+    private boolean cloudCompression;
+
+    @Value("${cloudCompressionThreshold:1024}")
+    private int cloudCompressionThreshold;
+
+    // reconnect delay grows from MIN to MAX, reset when connection was alive long enough
+    private static final long MIN_RECONNECT_DELAY = 500;
+    private static final long MAX_RECONNECT_DELAY = TimeUnit.SECONDS.toMillis(60);
+    private static final long STABLE_CONNECTION_TIME = TimeUnit.SECONDS.toMillis(30);
+    private static final long COMPRESSION_STATISTIC_LOG_INTERVAL = TimeUnit.MINUTES.toMillis(10);
+
+    // lives as long as bundle, connections are closed on restart but event loop is reused
+    private final EventLoopGroup workGroup = Epoll.isAvailable() ? new EpollEventLoopGroup(1) : new NioEventLoopGroup(1);
+    private final Class<? extends SocketChannel> channelClass = Epoll.isAvailable() ? EpollSocketChannel.class : NioSocketChannel.class;
+    // requests and request body listeners waiting for free worker, requests are limited by maxConcurrentRequests
+    private static final int MAX_QUEUED_WORKER_TASKS = 256;
+
+    // executes tunnel rest requests out of netty event loop
+    private final ThreadPoolExecutor requestWorkerPool = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(MAX_QUEUED_WORKER_TASKS), r -> new Thread(r, "netty-request-worker"));
+    // changes pushed to server over current connection
+    @Getter
+    private final TunnelEventPublisher eventPublisher = new TunnelEventPublisher();
+    // summed over all connections of this service
+    @Getter
+    private final TunnelCompression.Statistic compressionStatistic = new TunnelCompression.Statistic();
+    private long loggedCompressedFrames;
     private Thread listenClientsThread;
+    private volatile Channel channel;
+    private volatile long reconnectDelay = MIN_RECONNECT_DELAY;
 
     private ServerConnectionStatus serverConnectionStatus;
 
     public void postConstruct() {
+        eventPublisher.listenEntityUpdates(entityContext);
+        workGroup.scheduleAtFixedRate(this::logCompressionStatistic, COMPRESSION_STATISTIC_LOG_INTERVAL,
+                COMPRESSION_STATISTIC_LOG_INTERVAL, TimeUnit.MILLISECONDS);
         // TODO: remove service for now
         /*updateConnectionStatus(ServerConnectionStatus.NOT_CONNECTED, "");
         connectToServer();
@@ -50,22 +95,47 @@ public class NettyClientService {
         this.entityContext.listenSettingValueAsync(CloudServerPortSetting.class, this::restart);*/
     }
 
+    public void destroy() {
+        if (listenClientsThread != null) {
+            listenClientsThread.interrupt();
+        }
+        closeChannel();
+        workGroup.shutdownGracefully();
+        requestWorkerPool.shutdownNow();
+    }
+
+    // event loop only
+    private void logCompressionStatistic() {
+        long frames = compressionStatistic.getFrames();
+        if (frames != loggedCompressedFrames) {
+            loggedCompressedFrames = frames;
+            log.info("Tunnel compression statistic: {}", compressionStatistic);
+        }
+    }
+
     private void restart() {
         log.info("Start/restart connection to cloud");
-        if (serverConnectionStatus == ServerConnectionStatus.CONNECTED) {
-            try {
-                this.workGroup.shutdownGracefully().get(60, TimeUnit.SECONDS);
-                this.connectToServer();
-            } catch (TimeoutException ex) {
-                log.error("Unable to finish connection in 60 seconds");
-            } catch (Exception ex) {
-                log.error("Error stopping connect to server", ex);
+        if (listenClientsThread != null && listenClientsThread.isAlive()) {
+            // connect loop reconnects with fresh settings right after channel closed
+            reconnectDelay = MIN_RECONNECT_DELAY;
+            if (channel != null) {
+                closeChannel();
+            } else {
+                // wake up from reconnect delay
+                listenClientsThread.interrupt();
             }
         } else {
             this.connectToServer();
         }
     }
 
+    private void closeChannel() {
+        Channel channel = this.channel;
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
     private void connectToServer() {
         UserEntity user = entityContext.getEntity(ADMIN_USER);
         if (user.isPasswordNotSet(null)) {
@@ -79,8 +149,9 @@ public class NettyClientService {
             return;
         }
         this.listenClientsThread = new Thread(() -> {
-            while (!Thread.currentThread().isInterrupted()) {
+            while (!workGroup.isShuttingDown()) {
                 log.info("Starting netty client");
+                long connectTime = System.currentTimeMillis();
                 try {
                     connectLoop();
                     updateConnectionStatus(ServerConnectionStatus.DISCONNECTED, "");
@@ -89,8 +160,9 @@ public class NettyClientService {
                     updateConnectionStatus(ServerConnectionStatus.DISCONNECTED_WIDTH_ERRORS, TouchHomeUtils.getErrorMessage(ex));
                 }
                 try {
-                    TimeUnit.SECONDS.sleep(60);
+                    TimeUnit.MILLISECONDS.sleep(nextReconnectDelay(System.currentTimeMillis() - connectTime));
                 } catch (InterruptedException ignore) {
+                    // restart requested or bundle destroyed
                 }
             }
             log.error("Netty client finished");
@@ -98,43 +170,67 @@ public class NettyClientService {
         listenClientsThread.start();
     }
 
+    /**
+     * Exponential backoff with jitter. Delay taken in range [delay/2, delay] so many clients don't reconnect at once
+     * after server restart.
+     */
+    private long nextReconnectDelay(long connectionTime) {
+        if (connectionTime >= STABLE_CONNECTION_TIME) {
+            reconnectDelay = MIN_RECONNECT_DELAY;
+        }
+        long delay = reconnectDelay;
+        reconnectDelay = Math.min(delay * 2, MAX_RECONNECT_DELAY);
+        long jitterDelay = ThreadLocalRandom.current().nextLong(delay / 2, delay + 1);
+        log.info("Reconnect to cloud in {}ms", jitterDelay);
+        return jitterDelay;
+    }
+
     @SneakyThrows
     private void connectLoop() {
         Bootstrap bootstrap = new Bootstrap();
         bootstrap.group(workGroup);
-        bootstrap.channel(NioSocketChannel.class);
+        bootstrap.channel(channelClass);
         bootstrap.option(ChannelOption.SO_KEEPALIVE, true);
+        bootstrap.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) TimeUnit.SECONDS.toMillis(10));
 
         String host = entityContext.setting().getValue(CloudServerUrlSetting.class);
         Integer port = 8888;
 
-        bootstrap.handler(new ChannelInitializer<SocketChannel>() {
-            public void initChannel(SocketChannel socketChannel) throws Exception {
-                log.info("Client init channel: <{}>", socketChannel.toString());
-                ChannelPipeline pipeline = socketChannel.pipeline();
-
-                if (NettyClientService.this.serverUseSSl) {
-                    UserEntity user = entityContext.getEntity(ADMIN_USER);
-                    SSLContext sslContext = SslUtil.createSSLContext(user.getKeystore(), user.getPassword());
-                    SSLEngine engine = sslContext.createSSLEngine(host, port);
-                    engine.setEnabledProtocols(new String[]{"TLSv1.2"});
-                    engine.setUseClientMode(true);
-                    pipeline.addLast(new SslHandler(engine, false));
-                }
+        int maxConcurrentRequests = entityContext.setting().getValue(CloudServerMaxConcurrentRequestsSetting.class);
+        long requestTimeout = TimeUnit.SECONDS.toMillis(entityContext.setting().getValue(CloudServerRequestTimeoutSetting.class));
+        if (maxConcurrentRequests > requestWorkerPool.getMaximumPoolSize()) {
+            requestWorkerPool.setMaximumPoolSize(maxConcurrentRequests);
+            requestWorkerPool.setCorePoolSize(maxConcurrentRequests);
+        } else {
+            requestWorkerPool.setCorePoolSize(maxConcurrentRequests);
+            requestWorkerPool.setMaximumPoolSize(maxConcurrentRequests);
+        }
+        requestWorkerPool.allowCoreThreadTimeOut(true);
 
-                pipeline.addLast(
-                        new SocketModelEncoder(),
-                        new SocketModelDecoder(),
-                        new ClientProcessingHandler(dispatcherServletService));
-            }
-        });
+        bootstrap.handler(new TunnelChannelInitializer(dispatcherServletService, requestWorkerPool, maxConcurrentRequests,
+                requestTimeout, eventPublisher,
+                () -> new TunnelCompression(cloudCompression, cloudCompressionThreshold, compressionStatistic),
+                cloudBinaryBody, serverUseSSl ? socketChannel -> createSslHandler(host, port) : null));
         ChannelFuture channelFuture = bootstrap.connect(host, port).sync();
+        this.channel = channelFuture.channel();
         updateConnectionStatus(ServerConnectionStatus.CONNECTED, "");
-        log.info("Netty client started");
+        log.info("Netty client started. Transport: {}", channelClass.getSimpleName());
 
-        ChannelFuture future = channelFuture.channel().closeFuture().sync();
+        try {
+            channel.closeFuture().sync();
+        } finally {
+            this.channel = null;
+        }
+    }
 
-        future.get();
+    @SneakyThrows
+    private SslHandler createSslHandler(String host, int port) {
+        UserEntity user = entityContext.getEntity(ADMIN_USER);
+        SSLContext sslContext = SslUtil.createSSLContext(user.getKeystore(), user.getPassword());
+        SSLEngine engine = sslContext.createSSLEngine(host, port);
+        engine.setEnabledProtocols(new String[]{"TLSv1.2"});
+        engine.setUseClientMode(true);
+        return new SslHandler(engine, false);
     }
 
     private void updateConnectionStatus(ServerConnectionStatus serverConnectionStatus, String errorStatus) {
@@ -0,0 +1,225 @@
+package org.touchhome.bundle.cloud.netty.impl;
+
+import lombok.extern.log4j.Log4j2;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+
+/**
+ * Request body which arrives as SocketRestRequestChunkModel frames. Chunks are queued as received and never
+ * merged into one body array. Without ReadListener read blocks until next chunk arrives, with ReadListener stream works in
+ * non-blocking mode and listener is notified by listenerExecutor.
+ * When more than maxBufferedBytes are queued, flowControl is asked to stop reading tunnel until half of them consumed.
+ */
+@Log4j2
+public class ServletInputStreamAdapter extends ServletInputStream {
+
+    static final int MAX_BUFFERED_BYTES = 256 * 1024;
+
+    private final Deque<byte[]> chunks = new ArrayDeque<>();
+    private final Executor listenerExecutor;
+    private final FlowControl flowControl;
+
+    private byte[] current;
+    private int position;
+    private int bufferedBytes;
+    private boolean last;
+    private IOException error;
+    private boolean paused;
+
+    private ReadListener readListener;
+    private boolean listenerWaiting;
+    private boolean allDataReadNotified;
+
+    ServletInputStreamAdapter(Executor listenerExecutor, FlowControl flowControl) {
+        this.listenerExecutor = listenerExecutor;
+        this.flowControl = flowControl;
+    }
+
+    /**
+     * Create stream of body which arrived within request model
+     */
+    static ServletInputStreamAdapter of(byte[] content) {
+        ServletInputStreamAdapter inputStream = new ServletInputStreamAdapter(Runnable::run, null);
+        inputStream.offer(content, true);
+        return inputStream;
+    }
+
+    /**
+     * Add received chunk. Called from netty event loop
+     */
+    void offer(byte[] data, boolean last) {
+        synchronized (this) {
+            if (data != null && data.length > 0) {
+                chunks.add(data);
+                bufferedBytes += data.length;
+            }
+            this.last |= last;
+            if (!paused && flowControl != null && bufferedBytes > MAX_BUFFERED_BYTES) {
+                paused = true;
+                flowControl.pause();
+            }
+            notifyAll();
+            if (listenerWaiting) {
+                listenerWaiting = false;
+                notifyListener();
+            }
+        }
+    }
+
+    /**
+     * Abort body. Readers get IOException
+     */
+    void fail(IOException ex) {
+        synchronized (this) {
+            error = ex;
+            notifyAll();
+            if (readListener != null) {
+                ReadListener listener = readListener;
+                listenerExecutor.execute(() -> listener.onError(ex));
+            }
+            resumeIfPaused();
+        }
+    }
+
+    @Override
+    public synchronized boolean isFinished() {
+        return last && current == null && chunks.isEmpty();
+    }
+
+    @Override
+    public synchronized boolean isReady() {
+        if (current != null || !chunks.isEmpty() || last || error != null) {
+            return true;
+        }
+        listenerWaiting = readListener != null;
+        return false;
+    }
+
+    @Override
+    public synchronized void setReadListener(ReadListener readListener) {
+        if (this.readListener != null) {
+            throw new IllegalStateException("ReadListener already set");
+        }
+        this.readListener = readListener;
+        if (isReady()) {
+            notifyListener();
+        }
+    }
+
+    @Override
+    public synchronized int read() throws IOException {
+        if (!nextChunk()) {
+            return -1;
+        }
+        int value = current[position++] & 0xFF;
+        releaseCurrentIfRead();
+        return value;
+    }
+
+    @Override
+    public synchronized int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!nextChunk()) {
+            return -1;
+        }
+        int size = Math.min(len, current.length - position);
+        System.arraycopy(current, position, b, off, size);
+        position += size;
+        releaseCurrentIfRead();
+        return size;
+    }
+
+    @Override
+    public synchronized int available() {
+        return current == null ? 0 : current.length - position;
+    }
+
+    /**
+     * Make sure current chunk has data to read
+     *
+     * @return false if end of stream
+     */
+    private boolean nextChunk() throws IOException {
+        while (current == null) {
+            if (error != null) {
+                throw error;
+            }
+            byte[] next = chunks.poll();
+            if (next != null) {
+                current = next;
+                position = 0;
+                bufferedBytes -= next.length;
+                if (paused && bufferedBytes <= MAX_BUFFERED_BYTES / 2) {
+                    resumeIfPaused();
+                }
+                return true;
+            }
+            if (last) {
+                if (readListener != null && !allDataReadNotified) {
+                    allDataReadNotified = true;
+                    ReadListener listener = readListener;
+                    listenerExecutor.execute(() -> invokeListener(listener::onAllDataRead, listener));
+                }
+                return false;
+            }
+            if (readListener != null) {
+                throw new IllegalStateException("Read called while stream isn't ready");
+            }
+            try {
+                wait();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for request body");
+            }
+        }
+        return true;
+    }
+
+    private void releaseCurrentIfRead() {
+        if (position == current.length) {
+            current = null;
+        }
+    }
+
+    private void resumeIfPaused() {
+        if (paused) {
+            paused = false;
+            flowControl.resume();
+        }
+    }
+
+    private void notifyListener() {
+        ReadListener listener = readListener;
+        listenerExecutor.execute(() -> invokeListener(listener::onDataAvailable, listener));
+    }
+
+    private static void invokeListener(ListenerCall call, ReadListener listener) {
+        try {
+            call.run();
+        } catch (Throwable ex) {
+            log.error("Request body ReadListener error", ex);
+            listener.onError(ex);
+        }
+    }
+
+    private interface ListenerCall {
+        void run() throws IOException;
+    }
+
+    /**
+     * Pause/resume reading of tunnel while body isn't consumed
+     */
+    interface FlowControl {
+        void pause();
+
+        void resume();
+    }
+}
@@ -1,15 +1,33 @@
 package org.touchhome.bundle.cloud.netty.impl;
 
-import lombok.Getter;
-
 import javax.servlet.ServletOutputStream;
 import javax.servlet.WriteListener;
+import java.io.IOException;
 import java.util.Arrays;
 
+/**
+ * Collects response body. Small responses are sent as single SocketRestResponseModel once handler finished.
+ * When body outgrows one chunk or response flushed explicitly, response is committed: header is sent and body
+ * follows as bounded chunks as soon as each one is filled, so memory doesn't depend on response size.
+ */
 public class ServletOutputStreamAdapter extends ServletOutputStream {
 
-    @Getter
-    private byte[] array;
+    static final int CHUNK_SIZE = 64 * 1024;
+    private static final int INITIAL_SIZE = 1024;
+
+    private final int requestId;
+    private final HttpServletResponseAdapter response;
+    private final ChunkWriter chunkWriter;
+
+    private byte[] buffer = new byte[INITIAL_SIZE];
+    private int count;
+    private boolean committed;
+
+    ServletOutputStreamAdapter(int requestId, HttpServletResponseAdapter response, ChunkWriter chunkWriter) {
+        this.requestId = requestId;
+        this.response = response;
+        this.chunkWriter = chunkWriter;
+    }
 
     @Override
     public boolean isReady() {
@@ -22,17 +40,91 @@ public class ServletOutputStreamAdapter extends ServletOutputStream {
     }
 
     @Override
-    public void write(byte[] b) {
-        this.array = b;
+    public void write(int b) throws IOException {
+        ensureCapacity(count + 1);
+        buffer[count++] = (byte) b;
+        if (count == CHUNK_SIZE) {
+            sendChunk(false);
+        }
     }
 
     @Override
-    public void write(byte[] b, int off, int len) {
-        this.array = Arrays.copyOfRange(b, 0, b.length);
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int size = Math.min(len, CHUNK_SIZE - count);
+            ensureCapacity(count + size);
+            System.arraycopy(b, off, buffer, count, size);
+            count += size;
+            off += size;
+            len -= size;
+            if (count == CHUNK_SIZE) {
+                sendChunk(false);
+            }
+        }
     }
 
+    /**
+     * Stream flush doesn't commit response (message converters flush after each write), but sends pending data
+     * of already streamed response.
+     */
     @Override
-    public void write(int b) {
-        throw new RuntimeException("Not implemented exception");
+    public void flush() throws IOException {
+        if (committed && count > 0) {
+            sendChunk(false);
+        }
+    }
+
+    boolean isCommitted() {
+        return committed;
+    }
+
+    /**
+     * Commit response and send everything written so far
+     */
+    void flushBuffer() throws IOException {
+        if (!committed || count > 0) {
+            sendChunk(false);
+        }
+    }
+
+    /**
+     * Finish response
+     *
+     * @return true if response was streamed and end of stream has been sent
+     */
+    boolean finish() throws IOException {
+        if (!committed) {
+            return false;
+        }
+        sendChunk(true);
+        return true;
+    }
+
+    byte[] getArray() {
+        return Arrays.copyOf(buffer, count);
+    }
+
+    private void sendChunk(boolean last) throws IOException {
+        if (!committed) {
+            chunkWriter.writeHeader(SocketRestResponseModel.ofStreamHeader(requestId, response));
+            committed = true;
+        }
+        chunkWriter.writeChunk(new SocketRestResponseChunkModel(requestId, Arrays.copyOf(buffer, count), last));
+        count = 0;
+    }
+
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, minCapacity));
+        }
+    }
+
+    /**
+     * Writes streamed response frames to tunnel. Implementation may block until channel is able to accept more data.
+     */
+    interface ChunkWriter {
+        void writeHeader(SocketRestResponseModel header) throws IOException;
+
+        void writeChunk(SocketRestResponseChunkModel chunk) throws IOException;
     }
 }
@@ -0,0 +1,32 @@
+package org.touchhome.bundle.cloud.netty.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * Change pushed to subscribed server. Only latest change per key is sent when tunnel is busy,
+ * coalesced is number of skipped changes.
+ */
+@Getter
+@NoArgsConstructor
+class SocketEventModel extends SocketBaseModel {
+    private int subscriptionId;
+    private String type;
+    private String key;
+    private JsonNode value;
+    private long date;
+    private int coalesced;
+
+    SocketEventModel(int subscriptionId, String type, String key, JsonNode value, long date) {
+        this.subscriptionId = subscriptionId;
+        this.type = type;
+        this.key = key;
+        this.value = value;
+        this.date = date;
+    }
+
+    void setCoalesced(int coalesced) {
+        this.coalesced = coalesced;
+    }
+}
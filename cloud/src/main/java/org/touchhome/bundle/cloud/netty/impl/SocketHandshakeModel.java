@@ -0,0 +1,18 @@
+package org.touchhome.bundle.cloud.netty.impl;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Sent by client when connected with supported compression algorithms. Server replies with chosen one or null.
+ */
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+class SocketHandshakeModel extends SocketBaseModel {
+    private List<String> compressions;
+    private String compression;
+}
@@ -3,12 +3,21 @@ package org.touchhome.bundle.cloud.netty.impl;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.ReplayingDecoder;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
 
-import java.util.List;
+import java.io.InputStream;
 
-public class SocketModelDecoder extends ReplayingDecoder<SocketBaseModel> {
+/**
+ * Frame: [int payload length][byte model type][payload]. Frame is sliced from inbound buffer without copy and
+ * json is parsed straight from it.
+ * RestBinaryResponse/RestBinaryResponseChunk payload: [int json length][json without body][raw body]
+ * Payload of frame with TunnelCompression.COMPRESSED_FLAG in model type is decompressed first.
+ */
+public class SocketModelDecoder extends LengthFieldBasedFrameDecoder {
+
+    static final int MAX_FRAME_LENGTH = 64 * 1024 * 1024;
 
     private static final ObjectMapper objectMapper = new ObjectMapper();
 
@@ -16,22 +25,68 @@ public class SocketModelDecoder extends ReplayingDecoder<SocketBaseModel> {
         objectMapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
     }
 
-    private static ModelType getModelType(byte type) {
-        if (ModelType.values().length < type) {
+    private final TunnelCompression compression;
+
+    public SocketModelDecoder() {
+        this(new TunnelCompression(false, 0));
+    }
+
+    SocketModelDecoder(TunnelCompression compression) {
+        // length field doesn't include model type byte
+        super(MAX_FRAME_LENGTH, 0, 4, 1, 4);
+        this.compression = compression;
+    }
+
+    private static ModelType getModelType(int type) {
+        if (type < 0 || ModelType.values().length <= type) {
             throw new RuntimeException("Unable to find correct model type for type: " + type);
         }
         return ModelType.values()[type];
     }
 
     @Override
-    protected void decode(ChannelHandlerContext ctx,
-                          ByteBuf buffer, List<Object> out) throws Exception {
+    protected Object decode(ChannelHandlerContext ctx, ByteBuf in) throws Exception {
+        ByteBuf frame = (ByteBuf) super.decode(ctx, in);
+        if (frame == null) {
+            return null;
+        }
+        try {
+            int type = frame.readUnsignedByte();
+            if ((type & TunnelCompression.COMPRESSED_FLAG) != 0) {
+                ByteBuf payload = compression.decompress(ctx.alloc(), frame, MAX_FRAME_LENGTH);
+                frame.release();
+                frame = payload;
+                type &= ~TunnelCompression.COMPRESSED_FLAG;
+            }
+            ModelType modelType = getModelType(type);
+            if (modelType == ModelType.RestBinaryResponse) {
+                SocketRestResponseModel model = readBinaryBodyModel(frame, SocketRestResponseModel.class);
+                model.setResponse(readBody(frame));
+                return model;
+            }
+            if (modelType == ModelType.RestBinaryResponseChunk) {
+                SocketRestResponseChunkModel model = readBinaryBodyModel(frame, SocketRestResponseChunkModel.class);
+                model.setData(readBody(frame));
+                return model;
+            }
+            try (InputStream inputStream = new ByteBufInputStream(frame)) {
+                return objectMapper.readValue(inputStream, modelType.getTargetClass());
+            }
+        } finally {
+            frame.release();
+        }
+    }
 
-        int length = buffer.readInt();
-        ModelType modelType = getModelType(buffer.readByte());
-        byte[] dst = new byte[length];
-        buffer.readBytes(dst);
+    private static <T> T readBinaryBodyModel(ByteBuf frame, Class<T> modelClass) throws Exception {
+        int jsonLength = frame.readInt();
+        try (InputStream inputStream = new ByteBufInputStream(frame, jsonLength)) {
+            return objectMapper.readValue(inputStream, modelClass);
+        }
+    }
 
-        out.add(objectMapper.readValue(dst, modelType.getTargetClass()));
+    private static byte[] readBody(ByteBuf frame) {
+        byte[] body = new byte[frame.readableBytes()];
+        frame.readBytes(body);
+        return body;
     }
 }
@@ -1,25 +1,131 @@
 package org.touchhome.bundle.cloud.netty.impl;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToByteEncoder;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
 
+import java.io.OutputStream;
+
+/**
+ * Serialize models straight into outbound pooled buffer. Frame format described in {@link SocketModelDecoder}.
+ * With binaryBody rest response body is written raw after json instead of base64 json field.
+ * Once compression negotiated, payload is serialized into temporary buffer and compressed if large enough.
+ */
+@RequiredArgsConstructor(access = AccessLevel.PACKAGE)
 public class SocketModelEncoder extends MessageToByteEncoder<SocketBaseModel> {
 
     private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final ObjectMapper binaryBodyObjectMapper = new ObjectMapper();
 
     static {
         objectMapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+        binaryBodyObjectMapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+        binaryBodyObjectMapper.addMixIn(SocketRestResponseModel.class, BinaryBodyMixIn.class);
+        binaryBodyObjectMapper.addMixIn(SocketRestResponseChunkModel.class, BinaryChunkMixIn.class);
+    }
+
+    private final boolean binaryBody;
+    private final TunnelCompression compression;
+
+    public SocketModelEncoder() {
+        this(false);
+    }
+
+    public SocketModelEncoder(boolean binaryBody) {
+        this(binaryBody, new TunnelCompression(false, 0));
+    }
+
+    @Override
+    protected ByteBuf allocateBuffer(ChannelHandlerContext ctx, SocketBaseModel msg, boolean preferDirect) {
+        // reserve space for body up front, so large responses aren't copied on each buffer expand
+        int initialCapacity = 256;
+        byte[] body = getBody(msg);
+        if (body != null) {
+            initialCapacity += binaryBody ? body.length : body.length / 3 * 4 + 4;
+        }
+        return preferDirect ? ctx.alloc().ioBuffer(initialCapacity) : ctx.alloc().heapBuffer(initialCapacity);
     }
 
     @Override
     protected void encode(ChannelHandlerContext ctx, SocketBaseModel socketBaseModel, ByteBuf out) throws Exception {
-        byte[] bytes = objectMapper.writeValueAsBytes(socketBaseModel);
+        int lengthIndex = out.writerIndex();
+        out.writeInt(0);
+        int typeIndex = out.writerIndex();
+        out.writeByte(0);
+
+        if (compression.getAlgorithm() == null) {
+            out.setByte(typeIndex, writePayload(socketBaseModel, out));
+        } else {
+            ByteBuf payload = ctx.alloc().heapBuffer(out.capacity());
+            try {
+                int type = writePayload(socketBaseModel, payload);
+                if (compression.shouldCompress(payload.readableBytes())) {
+                    compression.compress(payload, out);
+                    type |= TunnelCompression.COMPRESSED_FLAG;
+                } else {
+                    out.writeBytes(payload);
+                }
+                out.setByte(typeIndex, type);
+            } finally {
+                payload.release();
+            }
+        }
+        // payload length excludes length field and model type byte
+        out.setInt(lengthIndex, out.writerIndex() - lengthIndex - 5);
+    }
+
+    /**
+     * @return model type
+     */
+    private int writePayload(SocketBaseModel socketBaseModel, ByteBuf out) throws Exception {
+        if (binaryBody && socketBaseModel instanceof SocketRestResponseModel) {
+            writeBinaryBody(socketBaseModel, out);
+            return ModelType.RestBinaryResponse.ordinal();
+        } else if (binaryBody && socketBaseModel instanceof SocketRestResponseChunkModel) {
+            writeBinaryBody(socketBaseModel, out);
+            return ModelType.RestBinaryResponseChunk.ordinal();
+        }
+        try (OutputStream outputStream = new ByteBufOutputStream(out)) {
+            objectMapper.writeValue(outputStream, socketBaseModel);
+        }
+        return ModelType.getType(socketBaseModel).ordinal();
+    }
+
+    private static void writeBinaryBody(SocketBaseModel model, ByteBuf out) throws Exception {
+        int jsonLengthIndex = out.writerIndex();
+        out.writeInt(0);
+        try (OutputStream outputStream = new ByteBufOutputStream(out)) {
+            binaryBodyObjectMapper.writeValue(outputStream, model);
+        }
+        out.setInt(jsonLengthIndex, out.writerIndex() - jsonLengthIndex - 4);
+        byte[] body = getBody(model);
+        if (body != null) {
+            out.writeBytes(body);
+        }
+    }
+
+    private static byte[] getBody(SocketBaseModel model) {
+        if (model instanceof SocketRestResponseModel) {
+            return ((SocketRestResponseModel) model).getResponse();
+        } else if (model instanceof SocketRestResponseChunkModel) {
+            return ((SocketRestResponseChunkModel) model).getData();
+        }
+        return null;
+    }
+
+    private abstract static class BinaryBodyMixIn {
+        @JsonIgnore
+        abstract byte[] getResponse();
+    }
 
-        out.writeInt(bytes.length);
-        out.writeByte(ModelType.getType(socketBaseModel).ordinal());
-        out.writeBytes(bytes);
+    private abstract static class BinaryChunkMixIn {
+        @JsonIgnore
+        abstract byte[] getData();
     }
 }
@@ -0,0 +1,15 @@
+package org.touchhome.bundle.cloud.netty.impl;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * Part of request body. Sent after SocketRestRequestModel with chunked flag, last chunk ends body.
+ */
+@Getter
+@NoArgsConstructor
+class SocketRestRequestChunkModel extends SocketBaseModel {
+    private int requestId;
+    private byte[] data;
+    private boolean last;
+}
@@ -16,6 +16,9 @@ class SocketRestRequestModel extends SocketBaseModel {
     private String path;
     private HttpContentType contentType;
     private Map<String, String[]> parameters;
+    private Map<String, String> headers;
     private int contentLength;
     private byte[] request;
+    // body follows as SocketRestRequestChunkModel frames
+    private boolean chunked;
 }
@@ -0,0 +1,33 @@
+package org.touchhome.bundle.cloud.netty.impl;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * Part of streamed rest response. Sent after SocketRestResponseModel with chunked flag, last chunk ends stream.
+ */
+@Getter
+@NoArgsConstructor
+class SocketRestResponseChunkModel extends SocketBaseModel {
+
+    private int requestId;
+    private byte[] data;
+    private boolean last;
+    private String error;
+
+    SocketRestResponseChunkModel(int requestId, byte[] data, boolean last) {
+        this.requestId = requestId;
+        this.data = data;
+        this.last = last;
+    }
+
+    void setData(byte[] data) {
+        this.data = data;
+    }
+
+    static SocketRestResponseChunkModel ofError(int requestId, Exception ex) {
+        SocketRestResponseChunkModel model = new SocketRestResponseChunkModel(requestId, null, true);
+        model.error = ex.getMessage();
+        return model;
+    }
+}
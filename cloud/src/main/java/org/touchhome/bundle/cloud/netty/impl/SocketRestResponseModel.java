@@ -4,9 +4,13 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 import static org.springframework.http.HttpHeaders.CONTENT_LENGTH;
 import static org.springframework.http.HttpHeaders.CONTENT_TYPE;
+import static org.springframework.http.HttpHeaders.ETAG;
+import static org.springframework.http.HttpHeaders.LAST_MODIFIED;
 
 @Getter
 @NoArgsConstructor
@@ -17,11 +21,19 @@ class SocketRestResponseModel extends SocketBaseModel {
     private byte[] response;
     private String error;
     private int status;
+    // body follows as SocketRestResponseChunkModel frames
+    private boolean chunked;
+    // only ETag and Last-Modified are passed
+    private Map<String, String> headers;
 
     private SocketRestResponseModel(int requestId) {
         this.requestId = requestId;
     }
 
+    void setResponse(byte[] response) {
+        this.response = response;
+    }
+
     static SocketRestResponseModel ofError(int requestId, Exception ex) {
         SocketRestResponseModel model = new SocketRestResponseModel(requestId);
         model.error = ex.getMessage();
@@ -34,10 +46,51 @@ class SocketRestResponseModel extends SocketBaseModel {
         String headerLength = response.getHeader(CONTENT_LENGTH);
         if (headerLength != null) {
             int length = Integer.parseInt(headerLength);
-            model.response = Arrays.copyOfRange(model.response, 0, length);
+            if (length < model.response.length) {
+                model.response = Arrays.copyOfRange(model.response, 0, length);
+            }
         }
         model.contentType = HttpContentType.contentTypeMap.get(response.getHeader(CONTENT_TYPE));
         model.status = response.getStatus();
+        model.putHeader(ETAG, response.getHeader(ETAG));
+        model.putHeader(LAST_MODIFIED, response.getHeader(LAST_MODIFIED));
+        return model;
+    }
+
+    static SocketRestResponseModel ofNotModified(int requestId, String etag) {
+        SocketRestResponseModel model = new SocketRestResponseModel(requestId);
+        model.status = 304;
+        model.putHeader(ETAG, etag);
+        return model;
+    }
+
+    static SocketRestResponseModel copyOf(int requestId, SocketRestResponseModel source) {
+        SocketRestResponseModel model = new SocketRestResponseModel(requestId);
+        model.contentType = source.contentType;
+        model.response = source.response;
+        model.status = source.status;
+        model.headers = source.headers;
+        return model;
+    }
+
+    String getHeader(String name) {
+        return headers == null ? null : headers.get(name);
+    }
+
+    void putHeader(String name, String value) {
+        if (value != null) {
+            if (headers == null) {
+                headers = new HashMap<>();
+            }
+            headers.put(name, value);
+        }
+    }
+
+    static SocketRestResponseModel ofStreamHeader(int requestId, HttpServletResponseAdapter response) {
+        SocketRestResponseModel model = new SocketRestResponseModel(requestId);
+        model.contentType = HttpContentType.contentTypeMap.get(response.getHeader(CONTENT_TYPE));
+        model.status = response.getStatus();
+        model.chunked = true;
         return model;
     }
 }
@@ -0,0 +1,24 @@
+package org.touchhome.bundle.cloud.netty.impl;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.Set;
+
+/**
+ * Sent by server to start or stop receiving SocketEventModel. Only listed types are sent, empty types match nothing.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+class SocketSubscribeModel extends SocketBaseModel {
+    private int subscriptionId;
+    private Set<String> types;
+    private String keyPrefix;
+    private boolean unsubscribe;
+
+    boolean match(String type, String key) {
+        return types != null && types.contains(type) && (keyPrefix == null || key.startsWith(keyPrefix));
+    }
+}
@@ -0,0 +1,54 @@
+package org.touchhome.bundle.cloud.netty.impl;
+
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.timeout.IdleStateHandler;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Builds tunnel client pipeline: optional TLS, heartbeat, codec, event push and request processing.
+ * Shared by NettyClientService and load tests, so tests run exactly the production pipeline.
+ */
+@Log4j2
+@RequiredArgsConstructor
+class TunnelChannelInitializer extends ChannelInitializer<SocketChannel> {
+
+    // send ping when nothing written, ping and then close half-open connection when nothing read
+    static final int WRITER_IDLE_SECONDS = 30;
+    static final int READER_IDLE_SECONDS = 90;
+
+    private final DispatcherServletService dispatcherServletService;
+    private final ExecutorService requestWorkerPool;
+    private final int maxConcurrentRequests;
+    private final long requestTimeoutMillis;
+    private final TunnelEventPublisher eventPublisher;
+    // compression state is per connection
+    private final Supplier<TunnelCompression> compressionFactory;
+    private final boolean binaryBody;
+    // null if connection isn't encrypted
+    private final Function<SocketChannel, SslHandler> sslHandlerFactory;
+
+    @Override
+    protected void initChannel(SocketChannel socketChannel) {
+        log.info("Client init channel: <{}>", socketChannel.toString());
+        ChannelPipeline pipeline = socketChannel.pipeline();
+        if (sslHandlerFactory != null) {
+            pipeline.addLast(sslHandlerFactory.apply(socketChannel));
+        }
+        TunnelCompression compression = compressionFactory.get();
+        pipeline.addLast(
+                new IdleStateHandler(READER_IDLE_SECONDS, WRITER_IDLE_SECONDS, 0),
+                new SocketModelEncoder(binaryBody, compression),
+                new SocketModelDecoder(compression),
+                new TunnelEventHandler(eventPublisher),
+                new ClientProcessingHandler(dispatcherServletService, requestWorkerPool, maxConcurrentRequests,
+                        requestTimeoutMillis, compression));
+    }
+}
@@ -0,0 +1,160 @@
+package org.touchhome.bundle.cloud.netty.impl;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Per channel frame compression. Client offers supported algorithms in SocketHandshakeModel when connected,
+ * outbound frames are compressed only after server accepted one of them and only if payload is larger than threshold.
+ * Compressed frames are marked by COMPRESSED_FLAG bit of model type byte, so inbound compressed frames are
+ * accepted any time. Deflater/Inflater are created once per channel and reset for every frame.
+ * Used only from channel event loop, except statistic which may be shared by channels and read any time.
+ */
+@Log4j2
+@RequiredArgsConstructor
+class TunnelCompression {
+
+    static final int COMPRESSED_FLAG = 0x80;
+    static final String DEFLATE = "deflate";
+    static final List<String> SUPPORTED = Collections.singletonList(DEFLATE);
+
+    private final boolean enabled;
+    private final int threshold;
+
+    @Getter
+    private final Statistic statistic;
+
+    private final byte[] scratch = new byte[16 * 1024];
+    private Deflater deflater;
+    private Inflater inflater;
+    @Getter
+    private String algorithm;
+
+    TunnelCompression(boolean enabled, int threshold) {
+        this(enabled, threshold, new Statistic());
+    }
+
+    List<String> getOffer() {
+        return enabled ? SUPPORTED : Collections.emptyList();
+    }
+
+    void accept(String algorithm) {
+        if (algorithm != null && enabled && SUPPORTED.contains(algorithm)) {
+            this.algorithm = algorithm;
+            log.info("Tunnel compression <{}> enabled. Threshold: {} bytes", algorithm, threshold);
+        }
+    }
+
+    boolean shouldCompress(int payloadLength) {
+        return algorithm != null && payloadLength >= threshold;
+    }
+
+    /**
+     * Compress readable bytes of heap buffer payload into out
+     */
+    void compress(ByteBuf payload, ByteBuf out) {
+        long start = System.nanoTime();
+        if (deflater == null) {
+            deflater = new Deflater(Deflater.BEST_SPEED);
+        }
+        int outStart = out.writerIndex();
+        deflater.setInput(payload.array(), payload.arrayOffset() + payload.readerIndex(), payload.readableBytes());
+        deflater.finish();
+        while (!deflater.finished()) {
+            int length = deflater.deflate(scratch);
+            out.writeBytes(scratch, 0, length);
+        }
+        deflater.reset();
+        statistic.update(payload.readableBytes(), out.writerIndex() - outStart, System.nanoTime() - start, true);
+    }
+
+    /**
+     * Decompress frame payload into new heap buffer
+     */
+    ByteBuf decompress(ByteBufAllocator allocator, ByteBuf frame, int maxLength) throws DataFormatException {
+        long start = System.nanoTime();
+        if (inflater == null) {
+            inflater = new Inflater();
+        }
+        int compressedLength = frame.readableBytes();
+        if (frame.hasArray()) {
+            inflater.setInput(frame.array(), frame.arrayOffset() + frame.readerIndex(), compressedLength);
+        } else {
+            inflater.setInput(ByteBufUtil.getBytes(frame));
+        }
+        ByteBuf payload = allocator.heapBuffer(compressedLength * 3);
+        try {
+            while (!inflater.finished()) {
+                int length = inflater.inflate(scratch);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("Truncated compressed frame");
+                }
+                if (payload.readableBytes() + length > maxLength) {
+                    throw new DataFormatException("Decompressed frame exceeds " + maxLength + " bytes");
+                }
+                payload.writeBytes(scratch, 0, length);
+            }
+        } catch (DataFormatException ex) {
+            payload.release();
+            throw ex;
+        } finally {
+            inflater.reset();
+        }
+        statistic.update(payload.readableBytes(), compressedLength, System.nanoTime() - start, false);
+        return payload;
+    }
+
+    void release() {
+        if (deflater != null) {
+            deflater.end();
+        }
+        if (inflater != null) {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Live counters, updated on every compressed/decompressed frame.
+     */
+    static class Statistic {
+        private final LongAdder frames = new LongAdder();
+        private final LongAdder rawBytes = new LongAdder();
+        private final LongAdder compressedBytes = new LongAdder();
+        private final LongAdder compressNanos = new LongAdder();
+        private final LongAdder decompressNanos = new LongAdder();
+
+        void update(int rawLength, int compressedLength, long nanos, boolean compress) {
+            frames.increment();
+            rawBytes.add(rawLength);
+            compressedBytes.add(compressedLength);
+            (compress ? compressNanos : decompressNanos).add(nanos);
+        }
+
+        long getFrames() {
+            return frames.sum();
+        }
+
+        long getSavedBytes() {
+            return rawBytes.sum() - compressedBytes.sum();
+        }
+
+        @Override
+        public String toString() {
+            return "frames: " + frames.sum() + ", raw bytes: " + rawBytes.sum() + ", saved bytes: " + getSavedBytes() +
+                    ", compress time: " + TimeUnit.NANOSECONDS.toMillis(compressNanos.sum()) + "ms" +
+                    ", decompress time: " + TimeUnit.NANOSECONDS.toMillis(decompressNanos.sum()) + "ms";
+        }
+    }
+}
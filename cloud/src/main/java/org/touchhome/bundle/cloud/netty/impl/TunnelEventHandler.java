@@ -0,0 +1,145 @@
+package org.touchhome.bundle.cloud.netty.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Push subscribed changes to server. Events wait in queue keyed by subscription and key, so while channel isn't
+ * writable only latest change of each key is kept and sent once channel drains. Queue is bounded, oldest keys
+ * dropped on overflow.
+ * Handler placed before ClientProcessingHandler, all not subscription messages passed down the pipeline.
+ */
+@Log4j2
+@RequiredArgsConstructor
+class TunnelEventHandler extends ChannelInboundHandlerAdapter {
+
+    static final int MAX_PENDING_EVENTS = 1024;
+
+    private final TunnelEventPublisher publisher;
+
+    private final Map<Integer, SocketSubscribeModel> subscriptions = new ConcurrentHashMap<>();
+    // guarded by itself
+    private final LinkedHashMap<String, SocketEventModel> pendingEvents = new LinkedHashMap<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private volatile ChannelHandlerContext ctx;
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        this.ctx = ctx;
+        super.channelActive(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        publisher.removeHandler(this);
+        subscriptions.clear();
+        synchronized (pendingEvents) {
+            pendingEvents.clear();
+        }
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().isWritable()) {
+            flush();
+        }
+        super.channelWritabilityChanged(ctx);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof SocketSubscribeModel) {
+            SocketSubscribeModel subscription = (SocketSubscribeModel) msg;
+            if (subscription.isUnsubscribe()) {
+                subscriptions.remove(subscription.getSubscriptionId());
+                log.info("Cloud unsubscribed <{}>", subscription.getSubscriptionId());
+            } else {
+                subscriptions.put(subscription.getSubscriptionId(), subscription);
+                log.info("Cloud subscribed <{}> to types: {}, key prefix: {}", subscription.getSubscriptionId(),
+                        subscription.getTypes(), subscription.getKeyPrefix());
+            }
+            if (subscriptions.isEmpty()) {
+                publisher.removeHandler(this);
+            } else {
+                publisher.addHandler(this);
+            }
+        } else {
+            super.channelRead(ctx, msg);
+        }
+    }
+
+    /**
+     * Called from publisher thread
+     */
+    void onEvent(String type, String key, Supplier<JsonNode> value, long date) {
+        boolean added = false;
+        for (SocketSubscribeModel subscription : subscriptions.values()) {
+            if (subscription.match(type, key)) {
+                enqueue(new SocketEventModel(subscription.getSubscriptionId(), type, key, value.get(), date));
+                added = true;
+            }
+        }
+        if (added && flushScheduled.compareAndSet(false, true)) {
+            ctx.executor().execute(() -> {
+                flushScheduled.set(false);
+                flush();
+            });
+        }
+    }
+
+    int getPendingEvents() {
+        synchronized (pendingEvents) {
+            return pendingEvents.size();
+        }
+    }
+
+    private void enqueue(SocketEventModel event) {
+        String eventKey = event.getSubscriptionId() + ":" + event.getKey();
+        synchronized (pendingEvents) {
+            SocketEventModel previous = pendingEvents.remove(eventKey);
+            if (previous != null) {
+                event.setCoalesced(previous.getCoalesced() + 1);
+            } else if (pendingEvents.size() >= MAX_PENDING_EVENTS) {
+                Iterator<SocketEventModel> iterator = pendingEvents.values().iterator();
+                log.warn("Tunnel event queue full. Drop event of <{}>", iterator.next().getKey());
+                iterator.remove();
+            }
+            pendingEvents.put(eventKey, event);
+        }
+    }
+
+    /**
+     * Write queued events while channel accepts them. Runs on event loop.
+     */
+    private void flush() {
+        ChannelHandlerContext ctx = this.ctx;
+        boolean written = false;
+        while (ctx.channel().isActive() && ctx.channel().isWritable()) {
+            SocketEventModel event;
+            synchronized (pendingEvents) {
+                Iterator<SocketEventModel> iterator = pendingEvents.values().iterator();
+                if (!iterator.hasNext()) {
+                    break;
+                }
+                event = iterator.next();
+                iterator.remove();
+            }
+            ctx.write(event);
+            written = true;
+        }
+        if (written) {
+            ctx.flush();
+        }
+    }
+}
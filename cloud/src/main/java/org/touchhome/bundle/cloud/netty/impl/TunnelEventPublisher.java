@@ -0,0 +1,149 @@
+package org.touchhome.bundle.cloud.netty.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.touchhome.bundle.api.EntityContext;
+import org.touchhome.bundle.api.entity.BaseEntity;
+import org.touchhome.bundle.api.entity.DeviceBaseEntity;
+import org.touchhome.bundle.api.model.Status;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Source of changes pushed through tunnel. Only updates of whitelisted entity types are published, each converted
+ * to its DTO, so entity internals never leave the box. Device entities are whitelisted by default, other bundles
+ * may whitelist own entities or publish own state changes. Device bundles push live values of their devices
+ * through publishDeviceState. Value converted to json only if any connected subscription is interested.
+ */
+@Log4j2
+public class TunnelEventPublisher {
+
+    // type of events published by publishDeviceState
+    public static final String DEVICE_STATE_TYPE = "DeviceState";
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    static {
+        objectMapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+    }
+
+    private final Set<TunnelEventHandler> handlers = new CopyOnWriteArraySet<>();
+    // entity class to DTO converter, subclasses of whitelisted class are published too
+    private final Map<Class<?>, Function<Object, Object>> entityTypes = new ConcurrentHashMap<>();
+
+    public TunnelEventPublisher() {
+        publishEntities(DeviceBaseEntity.class, DeviceDto::new);
+    }
+
+    void listenEntityUpdates(EntityContext entityContext) {
+        entityContext.event().addEntityUpdateListener(BaseEntity.class, "cloud-tunnel-events", this::publishEntity);
+    }
+
+    /**
+     * Whitelist entities of entityClass and its subclasses, update published as toDto result
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends BaseEntity> void publishEntities(Class<T> entityClass, Function<T, ?> toDto) {
+        entityTypes.put(entityClass, (Function<Object, Object>) toDto);
+    }
+
+    void publishEntity(BaseEntity entity) {
+        if (handlers.isEmpty()) {
+            return;
+        }
+        Function<Object, Object> toDto = findDtoConverter(entity.getClass());
+        if (toDto != null) {
+            publish(entity.getClass().getSimpleName(), entity.getEntityID(), toDto.apply(entity));
+        }
+    }
+
+    private Function<Object, Object> findDtoConverter(Class<?> entityClass) {
+        for (Class<?> type = entityClass; type != null; type = type.getSuperclass()) {
+            Function<Object, Object> toDto = entityTypes.get(type);
+            if (toDto != null) {
+                return toDto;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Publish live state value of device, i.e. value reported by zigbee cluster. Event key is
+     * deviceKey/stateKey, so subscription with key prefix 'deviceKey/' selects all states of device.
+     */
+    public void publishDeviceState(String deviceKey, String stateKey, String value, long date) {
+        if (handlers.isEmpty()) {
+            return;
+        }
+        publish(DEVICE_STATE_TYPE, deviceKey + "/" + stateKey, new DeviceStateDto(stateKey, value), date);
+    }
+
+    /**
+     * @param value DTO with only fields which may leave the box
+     */
+    public void publish(String type, String key, Object value) {
+        publish(type, key, value, System.currentTimeMillis());
+    }
+
+    private void publish(String type, String key, Object value, long date) {
+        if (handlers.isEmpty()) {
+            return;
+        }
+        Supplier<JsonNode> jsonValue = new Supplier<JsonNode>() {
+            private JsonNode json;
+
+            @Override
+            public JsonNode get() {
+                if (json == null) {
+                    try {
+                        json = objectMapper.valueToTree(value);
+                    } catch (Exception ex) {
+                        log.warn("Unable to convert tunnel event <{}> value: {}", key, ex.getMessage());
+                        json = objectMapper.getNodeFactory().nullNode();
+                    }
+                }
+                return json;
+            }
+        };
+        for (TunnelEventHandler handler : handlers) {
+            handler.onEvent(type, key, jsonValue, date);
+        }
+    }
+
+    void addHandler(TunnelEventHandler handler) {
+        handlers.add(handler);
+    }
+
+    void removeHandler(TunnelEventHandler handler) {
+        handlers.remove(handler);
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    static class DeviceStateDto {
+        private final String state;
+        private final String value;
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    static class DeviceDto {
+        private final String entityID;
+        private final String ieeeAddress;
+        private final String title;
+        private final Status status;
+
+        DeviceDto(DeviceBaseEntity<?> entity) {
+            this(entity.getEntityID(), entity.getIeeeAddress(), entity.getTitle(), entity.getJoined());
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package org.touchhome.bundle.cloud.netty.impl;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Small LRU cache of GET responses. Cleared on any entity change, entries also expire after TTL because
+ * not every response depends on entities.
+ * Key includes credentials and content negotiation headers, so response is never served to another user or
+ * for another representation.
+ */
+class TunnelResponseCache {
+
+    private static final int MAX_ENTRIES = 64;
+    private static final int MAX_BODY_SIZE = 256 * 1024;
+    private static final long TTL = TimeUnit.SECONDS.toMillis(30);
+    // headers which change who asks or what is returned
+    private static final List<String> CREDENTIAL_HEADERS = Arrays.asList("Authorization", "Cookie");
+    private static final List<String> VARY_HEADERS = Arrays.asList("Accept", "Accept-Language", "Accept-Encoding");
+
+    private final Map<String, CachedResponse> responses = new LinkedHashMap<String, CachedResponse>(16, 0.75F, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    static String getKey(SocketRestRequestModel model) {
+        StringBuilder key = new StringBuilder(model.getPath());
+        if (model.getParameters() != null) {
+            for (Map.Entry<String, String[]> entry : new TreeMap<>(model.getParameters()).entrySet()) {
+                key.append('&').append(entry.getKey()).append('=').append(Arrays.toString(entry.getValue()));
+            }
+        }
+        Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        if (model.getHeaders() != null) {
+            headers.putAll(model.getHeaders());
+        }
+        for (String header : CREDENTIAL_HEADERS) {
+            String value = headers.get(header);
+            // don't keep raw tokens in memory longer than request
+            key.append('\n').append(header).append(':').append(value == null ? "" :
+                    DigestUtils.md5DigestAsHex(value.getBytes(StandardCharsets.UTF_8)));
+        }
+        for (String header : VARY_HEADERS) {
+            String value = headers.get(header);
+            key.append('\n').append(header).append(':').append(value == null ? "" : value);
+        }
+        return key.toString();
+    }
+
+    synchronized SocketRestResponseModel get(String key, int requestId) {
+        CachedResponse cachedResponse = responses.get(key);
+        if (cachedResponse == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() - cachedResponse.created > TTL) {
+            responses.remove(key);
+            return null;
+        }
+        return SocketRestResponseModel.copyOf(requestId, cachedResponse.response);
+    }
+
+    synchronized void put(String key, SocketRestResponseModel response) {
+        if (response.getResponse() != null && response.getResponse().length <= MAX_BODY_SIZE) {
+            responses.put(key, new CachedResponse(response));
+        }
+    }
+
+    synchronized void clear() {
+        responses.clear();
+    }
+
+    @RequiredArgsConstructor
+    private static class CachedResponse {
+        private final SocketRestResponseModel response;
+        private final long created = System.currentTimeMillis();
+    }
+}
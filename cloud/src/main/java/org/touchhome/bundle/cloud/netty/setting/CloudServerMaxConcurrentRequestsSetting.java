@@ -0,0 +1,30 @@
+package org.touchhome.bundle.cloud.netty.setting;
+
+import org.touchhome.bundle.api.setting.SettingPluginSlider;
+
+/**
+ * Number of tunnel requests executed in parallel. When limit reached tunnel stops reading new requests until
+ * some of running requests finished.
+ */
+public class CloudServerMaxConcurrentRequestsSetting implements SettingPluginSlider {
+
+    @Override
+    public Integer getMin() {
+        return 1;
+    }
+
+    @Override
+    public Integer getMax() {
+        return 32;
+    }
+
+    @Override
+    public int defaultValue() {
+        return 4;
+    }
+
+    @Override
+    public int order() {
+        return 50;
+    }
+}
@@ -0,0 +1,31 @@
+package org.touchhome.bundle.cloud.netty.setting;
+
+import org.touchhome.bundle.api.setting.SettingPluginSlider;
+
+public class CloudServerRequestTimeoutSetting implements SettingPluginSlider {
+
+    @Override
+    public Integer getMin() {
+        return 5;
+    }
+
+    @Override
+    public Integer getMax() {
+        return 300;
+    }
+
+    @Override
+    public String getHeader() {
+        return "Sec";
+    }
+
+    @Override
+    public int defaultValue() {
+        return 60;
+    }
+
+    @Override
+    public int order() {
+        return 60;
+    }
+}
@@ -1,6 +1,8 @@
 package org.touchhome.bundle.cloud.providers;
 
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
 import org.springframework.stereotype.Component;
 import org.touchhome.bundle.api.hardware.other.MachineHardwareRepository;
 import org.touchhome.bundle.api.ui.BellNotification;
@@ -9,37 +11,132 @@ import org.touchhome.bundle.cloud.CloudProvider;
 import org.touchhome.bundle.cloud.netty.impl.ServerConnectionStatus;
 
 import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.Date;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * Tunnel service status requires forking process, so it's sampled in background every SAMPLE_INTERVAL_SECONDS
+ * (sampler starts on first access) and getStatus/getBellNotifications only read last snapshot.
+ * Sampler is stopped by destroy() when bundle is destroyed.
+ */
+@Log4j2
 @Component
 @RequiredArgsConstructor
 public class SshCloudProvider implements CloudProvider {
 
+    private static final String SERVICE_NAME = "touchhome-tunnel";
+    private static final int SAMPLE_INTERVAL_SECONDS = 30;
+
     private final MachineHardwareRepository machineHardwareRepository;
 
+    private final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "ssh-cloud-status");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean samplerStarted = new AtomicBoolean();
+    // not null while refresh is running, concurrent refresh requests share it
+    private final AtomicReference<CompletableFuture<ServiceStatus>> runningRefresh = new AtomicReference<>();
+    private volatile ServiceStatus serviceStatus;
+
     @Override
     public String getStatus() {
-        int serviceStatus = machineHardwareRepository.getServiceStatus("touchhome-tunnel");
-        return serviceStatus == 0 ? ServerConnectionStatus.CONNECTED.name() : ServerConnectionStatus.DISCONNECTED_WIDTH_ERRORS.name();
+        ServiceStatus status = getServiceStatus();
+        if (status == null) {
+            return ServerConnectionStatus.NOT_CONNECTED.name();
+        }
+        return status.getStatus() == 0 ? ServerConnectionStatus.CONNECTED.name() : ServerConnectionStatus.DISCONNECTED_WIDTH_ERRORS.name();
     }
 
     @Override
     public Set<BellNotification> getBellNotifications() {
         Set<BellNotification> notifications = new HashSet<>();
-        if (!Files.exists(TouchHomeUtils.getSshPath().resolve("id_rsa_touchhome"))) {
+        ServiceStatus status = getServiceStatus();
+        if (status == null) {
+            notifications.add(BellNotification.info("cloud-status").setTitle("Cloud").setValue("Checking connection status"));
+            return notifications;
+        }
+        if (!status.isPrivateKeyExists()) {
             notifications.add(BellNotification.danger("private-key").setTitle("Cloud").setValue("Private Key not found"));
         }
-        if (!Files.exists(TouchHomeUtils.getSshPath().resolve("id_rsa_touchhome.pub"))) {
+        if (!status.isPublicKeyExists()) {
             notifications.add(BellNotification.danger("public-key").setTitle("Cloud").setValue("Public key not found"));
         }
-        int serviceStatus = machineHardwareRepository.getServiceStatus("touchhome-tunnel");
-        if (serviceStatus == 0) {
+        if (status.getStatus() == 0) {
             notifications.add(BellNotification.info("cloud-status").setTitle("Cloud").setValue("Connected"));
         } else {
             notifications.add(BellNotification.warn("cloud-status").setTitle("Cloud")
-                    .setValue("Connection status not active " + serviceStatus));
+                    .setValue("Connection status not active " + status.getStatus() + " at " +
+                            new SimpleDateFormat("HH:mm:ss").format(new Date(status.getSampledAt()))));
         }
         return notifications;
     }
+
+    /**
+     * @return last sampled status or null if first sample not ready yet
+     */
+    public ServiceStatus getServiceStatus() {
+        if (samplerStarted.compareAndSet(false, true)) {
+            sampler.scheduleWithFixedDelay(this::refreshServiceStatus, 0, SAMPLE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        }
+        return serviceStatus;
+    }
+
+    public void destroy() {
+        // don't start sampler on access after destroy
+        samplerStarted.set(true);
+        sampler.shutdownNow();
+    }
+
+    /**
+     * Sample status out of turn, i.e. after tunnel restart. Joins refresh that is already running.
+     */
+    public CompletableFuture<ServiceStatus> refreshServiceStatus() {
+        CompletableFuture<ServiceStatus> future = new CompletableFuture<>();
+        while (!runningRefresh.compareAndSet(null, future)) {
+            CompletableFuture<ServiceStatus> running = runningRefresh.get();
+            if (running != null) {
+                return running;
+            }
+        }
+        try {
+            sampler.execute(() -> {
+                try {
+                    ServiceStatus status = new ServiceStatus(machineHardwareRepository.getServiceStatus(SERVICE_NAME),
+                            Files.exists(TouchHomeUtils.getSshPath().resolve("id_rsa_touchhome")),
+                            Files.exists(TouchHomeUtils.getSshPath().resolve("id_rsa_touchhome.pub")),
+                            System.currentTimeMillis());
+                    this.serviceStatus = status;
+                    runningRefresh.set(null);
+                    future.complete(status);
+                } catch (Exception ex) {
+                    log.warn("Unable to sample <{}> status: {}", SERVICE_NAME, ex.getMessage());
+                    runningRefresh.set(null);
+                    future.completeExceptionally(ex);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            runningRefresh.set(null);
+            future.completeExceptionally(new IllegalStateException("Sampler stopped"));
+        }
+        return future;
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class ServiceStatus {
+        private final int status;
+        private final boolean privateKeyExists;
+        private final boolean publicKeyExists;
+        private final long sampledAt;
+    }
 }
@@ -0,0 +1,130 @@
+package org.touchhome.bundle.cloud.netty.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Compares codec with previous byte[] based encoding (json serialized to array and copied into buffer, frame copied
+ * to array before parsing). Wire format is always checked, allocated bytes per message depend on JVM so are checked
+ * only with -DallocationBenchmark=true.
+ */
+public class SocketModelCodecBenchmarkTest {
+
+    private static final int ITERATIONS = 200;
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void testRoundTrip() {
+        for (boolean binaryBody : new boolean[]{false, true}) {
+            SocketRestResponseModel model = createResponse(1024);
+            SocketRestResponseModel decoded = roundTrip(new EmbeddedChannel(new SocketModelEncoder(binaryBody)),
+                    new EmbeddedChannel(new SocketModelDecoder()), model);
+
+            assertEquals(model.getRequestId(), decoded.getRequestId());
+            assertEquals(model.getStatus(), decoded.getStatus());
+            assertArrayEquals(model.getResponse(), decoded.getResponse());
+        }
+    }
+
+    @Test
+    public void testCompressedRoundTrip() {
+        TunnelCompression compression = new TunnelCompression(true, 64);
+        compression.accept(TunnelCompression.DEFLATE);
+        SocketRestResponseModel model = new SocketRestResponseModel();
+        model.setResponse(new byte[64 * 1024]);
+
+        SocketRestResponseModel decoded = roundTrip(new EmbeddedChannel(new SocketModelEncoder(true, compression)),
+                new EmbeddedChannel(new SocketModelDecoder(compression)), model);
+
+        assertArrayEquals(model.getResponse(), decoded.getResponse());
+        assertTrue(compression.getStatistic().getSavedBytes() > 0);
+    }
+
+    @Test
+    @Tag("benchmark")
+    @EnabledIfSystemProperty(named = "allocationBenchmark", matches = "true")
+    public void benchmarkLargeResponse() throws Exception {
+        int bodySize = 4 * 1024 * 1024;
+        SocketRestResponseModel model = createResponse(bodySize);
+        EmbeddedChannel encoder = new EmbeddedChannel(new SocketModelEncoder(true));
+        EmbeddedChannel decoder = new EmbeddedChannel(new SocketModelDecoder());
+
+        // warm up
+        for (int i = 0; i < 20; i++) {
+            roundTrip(encoder, decoder, model);
+            legacyRoundTrip(model);
+        }
+
+        long allocated = allocatedBytes();
+        for (int i = 0; i < ITERATIONS; i++) {
+            roundTrip(encoder, decoder, model);
+        }
+        long codecAllocated = (allocatedBytes() - allocated) / ITERATIONS;
+
+        allocated = allocatedBytes();
+        for (int i = 0; i < ITERATIONS; i++) {
+            legacyRoundTrip(model);
+        }
+        long legacyAllocated = (allocatedBytes() - allocated) / ITERATIONS;
+
+        // decoded body plus at most one frame, legacy copies body several times as base64 json
+        assertTrue(codecAllocated < 2 * bodySize + 64 * 1024, "codec allocated " + codecAllocated + " bytes per message");
+        assertTrue(codecAllocated < legacyAllocated / 2, "codec allocated " + codecAllocated
+                + " bytes per message, legacy " + legacyAllocated);
+    }
+
+    private static SocketRestResponseModel roundTrip(EmbeddedChannel encoder, EmbeddedChannel decoder, SocketRestResponseModel model) {
+        encoder.writeOutbound(model);
+        ByteBuf frame = encoder.readOutbound();
+        decoder.writeInbound(frame);
+        return decoder.readInbound();
+    }
+
+    private static SocketRestResponseModel legacyRoundTrip(SocketRestResponseModel model) throws Exception {
+        byte[] bytes = objectMapper.writeValueAsBytes(model);
+        ByteBuf buffer = PooledByteBufAllocator.DEFAULT.ioBuffer();
+        try {
+            buffer.writeInt(bytes.length);
+            buffer.writeByte(ModelType.RestResponse.ordinal());
+            buffer.writeBytes(bytes);
+
+            int length = buffer.readInt();
+            buffer.readByte();
+            byte[] dst = new byte[length];
+            buffer.readBytes(dst);
+            return objectMapper.readValue(dst, SocketRestResponseModel.class);
+        } finally {
+            buffer.release();
+        }
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        assumeTrue(threadMXBean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threadMXBean).isThreadAllocatedMemorySupported(),
+                "Thread allocation counter not supported by JVM");
+        return ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static SocketRestResponseModel createResponse(int size) {
+        byte[] body = new byte[size];
+        new Random(1).nextBytes(body);
+        SocketRestResponseModel model = new SocketRestResponseModel();
+        model.setResponse(body);
+        return model;
+    }
+}
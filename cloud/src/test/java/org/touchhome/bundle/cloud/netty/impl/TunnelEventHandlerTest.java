@@ -0,0 +1,90 @@
+package org.touchhome.bundle.cloud.netty.impl;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class TunnelEventHandlerTest {
+
+    @Test
+    public void testFilterAndCoalesce() {
+        TunnelEventPublisher publisher = new TunnelEventPublisher();
+        EmbeddedChannel channel = new EmbeddedChannel(new TunnelEventHandler(publisher));
+        channel.writeInbound(subscribe(1, "ZigBeeDeviceEntity", "zb_"));
+
+        publisher.publish("ZigBeeDeviceEntity", "zb_1", Collections.singletonMap("value", 1));
+        publisher.publish("ZigBeeDeviceEntity", "zb_1", Collections.singletonMap("value", 2));
+        publisher.publish("ZigBeeDeviceEntity", "zb_2", Collections.singletonMap("value", 3));
+        publisher.publish("ZigBeeDeviceEntity", "other", Collections.singletonMap("value", 4));
+        publisher.publish("FirmataDeviceEntity", "zb_3", Collections.singletonMap("value", 5));
+        channel.runPendingTasks();
+
+        SocketEventModel first = channel.readOutbound();
+        assertEquals("zb_1", first.getKey());
+        assertEquals(2, first.getValue().get("value").asInt());
+        assertEquals(1, first.getCoalesced());
+        SocketEventModel second = channel.readOutbound();
+        assertEquals("zb_2", second.getKey());
+        assertEquals(0, second.getCoalesced());
+        assertNull(channel.readOutbound());
+
+        SocketSubscribeModel unsubscribe = subscribe(1, null, null);
+        unsubscribe.setUnsubscribe(true);
+        channel.writeInbound(unsubscribe);
+        publisher.publish("ZigBeeDeviceEntity", "zb_1", 1);
+        channel.runPendingTasks();
+        assertNull(channel.readOutbound());
+    }
+
+    @Test
+    public void testDeviceStateReachesSubscriber() {
+        TunnelEventPublisher publisher = new TunnelEventPublisher();
+        EmbeddedChannel channel = new EmbeddedChannel(new TunnelEventHandler(publisher));
+        channel.writeInbound(subscribe(1, TunnelEventPublisher.DEVICE_STATE_TYPE, "00124b0001/"));
+
+        publisher.publishDeviceState("00124b0001", "6_1_zigbee:on_off", "ON", 1000);
+        publisher.publishDeviceState("00124b0002", "6_1_zigbee:on_off", "OFF", 1000);
+        channel.runPendingTasks();
+
+        SocketEventModel event = channel.readOutbound();
+        assertEquals(1, event.getSubscriptionId());
+        assertEquals(TunnelEventPublisher.DEVICE_STATE_TYPE, event.getType());
+        assertEquals("00124b0001/6_1_zigbee:on_off", event.getKey());
+        assertEquals("ON", event.getValue().get("value").asText());
+        assertEquals(1000, event.getDate());
+        assertNull(channel.readOutbound());
+    }
+
+    @Test
+    public void testEmptyTypesMatchNothing() {
+        TunnelEventPublisher publisher = new TunnelEventPublisher();
+        EmbeddedChannel channel = new EmbeddedChannel(new TunnelEventHandler(publisher));
+        SocketSubscribeModel subscription = subscribe(1, null, null);
+        subscription.setTypes(Collections.emptySet());
+        channel.writeInbound(subscription);
+        channel.writeInbound(subscribe(2, null, "zb_"));
+
+        publisher.publish("ZigBeeDeviceEntity", "zb_1", 1);
+        channel.runPendingTasks();
+        assertNull(channel.readOutbound());
+    }
+
+    @Test
+    public void testOtherModelsPassed() {
+        EmbeddedChannel channel = new EmbeddedChannel(new TunnelEventHandler(new TunnelEventPublisher()));
+        channel.writeInbound(new SocketPingRequestModel());
+        assertEquals(SocketPingRequestModel.class, channel.readInbound().getClass());
+    }
+
+    private static SocketSubscribeModel subscribe(int id, String type, String keyPrefix) {
+        SocketSubscribeModel model = new SocketSubscribeModel();
+        model.setSubscriptionId(id);
+        model.setTypes(type == null ? null : Collections.singleton(type));
+        model.setKeyPrefix(keyPrefix);
+        return model;
+    }
+}
@@ -0,0 +1,89 @@
+package org.touchhome.bundle.cloud.netty.impl;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Replays mix of requests through TunnelTestServer keeping configured number of requests in flight.
+ */
+@RequiredArgsConstructor
+class TunnelLoadGenerator {
+
+    private final TunnelTestServer server;
+    private final List<Supplier<SocketRestRequestModel>> requestMix;
+
+    Report run(int totalRequests, int concurrency, long timeout, TimeUnit timeUnit) throws InterruptedException {
+        Semaphore permits = new Semaphore(concurrency);
+        CountDownLatch finished = new CountDownLatch(totalRequests);
+        long[] latencies = new long[totalRequests];
+        AtomicInteger failed = new AtomicInteger();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < totalRequests; i++) {
+            permits.acquire();
+            int index = i;
+            long requestStart = System.nanoTime();
+            server.send(requestMix.get(i % requestMix.size()).get()).whenComplete((response, ex) -> {
+                latencies[index] = System.nanoTime() - requestStart;
+                if (ex != null || response.getError() != null) {
+                    failed.incrementAndGet();
+                }
+                permits.release();
+                finished.countDown();
+            });
+        }
+        finished.await(timeout, timeUnit);
+        long duration = System.nanoTime() - start;
+        int unfinished = (int) finished.getCount();
+        return new Report(totalRequests, failed.get(), unfinished, duration, latencies);
+    }
+
+    @Getter
+    static class Report {
+        private final int requests;
+        // finished with error
+        private final int failed;
+        // neither completed nor failed until timeout
+        private final int unfinished;
+        private final double throughput;
+        private final long p50Micros;
+        private final long p99Micros;
+
+        Report(int requests, int failed, int unfinished, long durationNanos, long[] latencies) {
+            this.requests = requests;
+            this.failed = failed;
+            this.unfinished = unfinished;
+            this.throughput = requests / (durationNanos / 1_000_000_000D);
+            long[] sorted = latencies.clone();
+            Arrays.sort(sorted);
+            this.p50Micros = TimeUnit.NANOSECONDS.toMicros(percentile(sorted, 0.5));
+            this.p99Micros = TimeUnit.NANOSECONDS.toMicros(percentile(sorted, 0.99));
+        }
+
+        int getErrors() {
+            return failed + unfinished;
+        }
+
+        int getCompleted() {
+            return requests - failed - unfinished;
+        }
+
+        private static long percentile(long[] sorted, double percentile) {
+            return sorted[Math.min(sorted.length - 1, (int) Math.ceil(percentile * sorted.length) - 1)];
+        }
+
+        @Override
+        public String toString() {
+            return String.format("requests: %d, failed: %d, unfinished: %d, throughput: %.1f req/s, p50: %dus, p99: %dus",
+                    requests, failed, unfinished, throughput, p50Micros, p99Micros);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package org.touchhome.bundle.cloud.netty.impl;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.http.HttpMethod;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.HttpRequestHandler;
+import org.springframework.web.servlet.handler.SimpleUrlHandlerMapping;
+import org.springframework.web.servlet.mvc.HttpRequestHandlerAdapter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.springframework.http.HttpHeaders.CONTENT_TYPE;
+
+/**
+ * Runs real tunnel client pipeline against local TunnelTestServer over TLS. Takes several seconds, so runs only
+ * with -DtunnelLoadTest=true. Latency/throughput are not asserted, only that every request finished.
+ */
+@Tag("load")
+@EnabledIfSystemProperty(named = "tunnelLoadTest", matches = "true")
+public class TunnelLoadHarnessTest {
+
+    private static final int LARGE_RESPONSE_SIZE = 256 * 1024;
+    private static final int CONCURRENCY = 8;
+
+    private TunnelTestServer server;
+    private EventLoopGroup clientGroup;
+    private ExecutorService workerPool;
+    private TunnelLoadGenerator loadGenerator;
+    private volatile boolean stopped;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        server = createServer();
+        int port = server.start();
+
+        workerPool = Executors.newFixedThreadPool(CONCURRENCY);
+        clientGroup = new NioEventLoopGroup(1);
+        SslContext sslContext = SslContextBuilder.forClient().trustManager(InsecureTrustManagerFactory.INSTANCE).build();
+        Channel channel = connectClient(port, sslContext, new DispatcherServletService(createApplicationContext(), null))
+                .sync().channel();
+        assertTrue(channel.isActive());
+
+        Supplier<SocketRestRequestModel> small = () -> request(HttpMethod.GET, "/small", null);
+        Supplier<SocketRestRequestModel> large = () -> request(HttpMethod.GET, "/large", null);
+        Supplier<SocketRestRequestModel> echo = () -> request(HttpMethod.POST, "/echo", new byte[4096]);
+        loadGenerator = new TunnelLoadGenerator(server, Arrays.asList(small, small, small, echo, large));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        stopped = true;
+        if (server != null) {
+            server.close();
+        }
+        if (clientGroup != null) {
+            clientGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+            workerPool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testLoad() throws Exception {
+        TunnelLoadGenerator.Report report = loadGenerator.run(500, CONCURRENCY, 60, TimeUnit.SECONDS);
+
+        assertEquals(0, report.getErrors(), report.toString());
+    }
+
+    @Test
+    public void testSlowReads() throws Exception {
+        server.setSlowReadMillis(5);
+        TunnelLoadGenerator.Report report = loadGenerator.run(100, CONCURRENCY, 60, TimeUnit.SECONDS);
+
+        assertEquals(0, report.getErrors(), report.toString());
+    }
+
+    @Test
+    public void testDroppedConnection() throws Exception {
+        server.setDropConnectionProbability(0.1);
+        TunnelLoadGenerator.Report report = loadGenerator.run(200, CONCURRENCY, 30, TimeUnit.SECONDS);
+
+        // no request hangs: each one got response or failed with its connection
+        assertEquals(0, report.getUnfinished(), report.toString());
+        assertTrue(report.getFailed() > 0, report.toString());
+        assertTrue(report.getCompleted() > 0, report.toString());
+        assertTrue(server.getConnections() > 1, "Client not reconnected");
+    }
+
+    private static TunnelTestServer createServer() {
+        try {
+            return new TunnelTestServer(true);
+        } catch (Exception ex) {
+            // self-signed certificate generation isn't available on every jdk without bouncycastle
+            assumeTrue(false, "Unable to create self-signed certificate: " + ex.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Connect and reconnect after connection lost, like NettyClientService does
+     */
+    private ChannelFuture connectClient(int port, SslContext sslContext, DispatcherServletService dispatcherServletService) {
+        ChannelFuture connectFuture = new Bootstrap()
+                .group(clientGroup)
+                .channel(NioSocketChannel.class)
+                .handler(new TunnelChannelInitializer(dispatcherServletService, workerPool, CONCURRENCY,
+                        TimeUnit.SECONDS.toMillis(30), new TunnelEventPublisher(), () -> new TunnelCompression(false, 0),
+                        false, socketChannel -> sslContext.newHandler(socketChannel.alloc(), "127.0.0.1", port)))
+                .connect("127.0.0.1", port);
+        connectFuture.addListener((ChannelFuture future) -> {
+            if (future.isSuccess()) {
+                future.channel().closeFuture().addListener(closed -> reconnect(port, sslContext, dispatcherServletService));
+            } else {
+                reconnect(port, sslContext, dispatcherServletService);
+            }
+        });
+        return connectFuture;
+    }
+
+    private void reconnect(int port, SslContext sslContext, DispatcherServletService dispatcherServletService) {
+        if (!stopped) {
+            clientGroup.schedule(() -> connectClient(port, sslContext, dispatcherServletService), 100, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static GenericApplicationContext createApplicationContext() {
+        Map<String, HttpRequestHandler> handlers = new HashMap<>();
+        handlers.put("/small", (request, response) -> {
+            response.setHeader(CONTENT_TYPE, HttpContentType.Json.rawValue);
+            response.getOutputStream().write("{\"value\":true}".getBytes(StandardCharsets.UTF_8));
+        });
+        handlers.put("/large", (request, response) -> {
+            byte[] block = new byte[8 * 1024];
+            for (int i = 0; i < LARGE_RESPONSE_SIZE / block.length; i++) {
+                response.getOutputStream().write(block);
+            }
+        });
+        handlers.put("/echo", (request, response) -> StreamUtils.copy(request.getInputStream(), response.getOutputStream()));
+
+        GenericApplicationContext context = new GenericApplicationContext();
+        context.registerBean(SimpleUrlHandlerMapping.class, () -> {
+            SimpleUrlHandlerMapping handlerMapping = new SimpleUrlHandlerMapping();
+            handlerMapping.setUrlMap(handlers);
+            return handlerMapping;
+        });
+        context.registerBean(HttpRequestHandlerAdapter.class);
+        context.refresh();
+        return context;
+    }
+
+    private static SocketRestRequestModel request(HttpMethod method, String path, byte[] body) {
+        SocketRestRequestModel model = new SocketRestRequestModel();
+        model.setHttpMethod(method);
+        model.setPath(path);
+        if (body != null) {
+            model.setContentType(HttpContentType.Json);
+            model.setContentLength(body.length);
+            model.setRequest(body);
+        }
+        return model;
+    }
+}
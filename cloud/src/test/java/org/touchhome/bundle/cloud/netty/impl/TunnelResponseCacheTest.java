@@ -0,0 +1,48 @@
+package org.touchhome.bundle.cloud.netty.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class TunnelResponseCacheTest {
+
+    @Test
+    public void testKeyDependsOnUserAndAccept() {
+        String key = TunnelResponseCache.getKey(request("Authorization", "Bearer a"));
+
+        assertEquals(key, TunnelResponseCache.getKey(request("authorization", "Bearer a")));
+        assertNotEquals(key, TunnelResponseCache.getKey(request("Authorization", "Bearer b")));
+        assertNotEquals(key, TunnelResponseCache.getKey(request(null, null)));
+        assertNotEquals(TunnelResponseCache.getKey(request("Accept", "application/json")),
+                TunnelResponseCache.getKey(request("Accept", "text/html")));
+    }
+
+    @Test
+    public void testOtherUserDoesNotGetCachedResponse() {
+        TunnelResponseCache cache = new TunnelResponseCache();
+        SocketRestResponseModel response = new SocketRestResponseModel();
+        response.setResponse(new byte[]{1, 2, 3});
+        cache.put(TunnelResponseCache.getKey(request("Cookie", "session=a")), response);
+
+        assertNotNull(cache.get(TunnelResponseCache.getKey(request("Cookie", "session=a")), 2));
+        assertNull(cache.get(TunnelResponseCache.getKey(request("Cookie", "session=b")), 3));
+        assertNull(cache.get(TunnelResponseCache.getKey(request(null, null)), 4));
+    }
+
+    private static SocketRestRequestModel request(String header, String value) {
+        SocketRestRequestModel model = new SocketRestRequestModel();
+        model.setPath("/rest/item");
+        Map<String, String> headers = new HashMap<>();
+        if (header != null) {
+            headers.put(header, value);
+        }
+        model.setHeaders(headers);
+        return model;
+    }
+}
@@ -0,0 +1,218 @@
+package org.touchhome.bundle.cloud.netty.impl;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.util.SelfSignedCertificate;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Stand-in for cloud server. Accepts tunnel client, sends SocketRestRequestModel requests to its latest connection
+ * and collects plain and chunked responses. Supports fault injection: slow reads and randomly dropped connection,
+ * requests of dropped connection fail.
+ */
+@Log4j2
+class TunnelTestServer implements AutoCloseable {
+
+    private final EventLoopGroup group = new NioEventLoopGroup(1);
+    private final SslContext sslContext;
+    private final AtomicInteger requestIds = new AtomicInteger();
+    private final Map<Integer, PendingResponse> pendingResponses = new ConcurrentHashMap<>();
+    // completed when client connects, replaced when connection lost
+    private final AtomicReference<CompletableFuture<Channel>> clientChannel = new AtomicReference<>(new CompletableFuture<>());
+    private final AtomicInteger connections = new AtomicInteger();
+    private Channel serverChannel;
+
+    // pause reading for this time after every received frame
+    @Setter
+    private volatile long slowReadMillis;
+    // probability to close connection right after request sent
+    @Setter
+    private volatile double dropConnectionProbability;
+
+    /**
+     * @param ssl use TLS with self-signed certificate
+     */
+    TunnelTestServer(boolean ssl) throws Exception {
+        if (ssl) {
+            SelfSignedCertificate certificate = new SelfSignedCertificate();
+            this.sslContext = SslContextBuilder.forServer(certificate.certificate(), certificate.privateKey()).build();
+        } else {
+            this.sslContext = null;
+        }
+    }
+
+    /**
+     * @return bound port
+     */
+    int start() throws InterruptedException {
+        ServerBootstrap bootstrap = new ServerBootstrap()
+                .group(group)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel socketChannel) {
+                        if (sslContext != null) {
+                            socketChannel.pipeline().addLast(sslContext.newHandler(socketChannel.alloc()));
+                        }
+                        socketChannel.pipeline().addLast(new SocketModelEncoder(), new SocketModelDecoder(), new ServerHandler());
+                    }
+                });
+        serverChannel = bootstrap.bind("127.0.0.1", 0).sync().channel();
+        return ((InetSocketAddress) serverChannel.localAddress()).getPort();
+    }
+
+    boolean isSsl() {
+        return sslContext != null;
+    }
+
+    /**
+     * @return count of accepted client connections
+     */
+    int getConnections() {
+        return connections.get();
+    }
+
+    CompletableFuture<SocketRestResponseModel> send(SocketRestRequestModel model) {
+        int requestId = requestIds.incrementAndGet();
+        model.setRequestId(requestId);
+        Channel channel;
+        try {
+            channel = clientChannel.get().get(10, TimeUnit.SECONDS);
+        } catch (Exception ex) {
+            CompletableFuture<SocketRestResponseModel> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new IOException("Client not connected", ex));
+            return failed;
+        }
+        PendingResponse pendingResponse = new PendingResponse(channel);
+        pendingResponses.put(requestId, pendingResponse);
+
+        channel.writeAndFlush(model).addListener(future -> {
+            if (!future.isSuccess()) {
+                fail(requestId, future.cause());
+            } else if (dropConnectionProbability > 0 && ThreadLocalRandom.current().nextDouble() < dropConnectionProbability) {
+                log.info("Drop tunnel connection");
+                channel.close();
+            }
+        });
+        return pendingResponse.future;
+    }
+
+    private void fail(int requestId, Throwable ex) {
+        PendingResponse pendingResponse = pendingResponses.remove(requestId);
+        if (pendingResponse != null) {
+            pendingResponse.future.completeExceptionally(ex);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (serverChannel != null) {
+            serverChannel.close();
+        }
+        group.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+    }
+
+    @RequiredArgsConstructor
+    private static class PendingResponse {
+        private final Channel channel;
+        private final CompletableFuture<SocketRestResponseModel> future = new CompletableFuture<>();
+        private SocketRestResponseModel header;
+        private ByteArrayOutputStream body;
+    }
+
+    private class ServerHandler extends SimpleChannelInboundHandler<SocketBaseModel> {
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) throws Exception {
+            connections.incrementAndGet();
+            if (!clientChannel.get().complete(ctx.channel())) {
+                clientChannel.set(CompletableFuture.completedFuture(ctx.channel()));
+            }
+            super.channelActive(ctx);
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            CompletableFuture<Channel> current = clientChannel.get();
+            if (current.isDone() && current.join() == ctx.channel()) {
+                clientChannel.compareAndSet(current, new CompletableFuture<>());
+            }
+            for (Map.Entry<Integer, PendingResponse> entry : pendingResponses.entrySet()) {
+                if (entry.getValue().channel == ctx.channel()) {
+                    fail(entry.getKey(), new IOException("Connection dropped"));
+                }
+            }
+            super.channelInactive(ctx);
+        }
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, SocketBaseModel model) {
+            if (model instanceof SocketPingRequestModel) {
+                ctx.writeAndFlush(new SocketPingResponseModel());
+            } else if (model instanceof SocketRestResponseModel) {
+                handleResponse((SocketRestResponseModel) model);
+            } else if (model instanceof SocketRestResponseChunkModel) {
+                handleResponseChunk((SocketRestResponseChunkModel) model);
+            }
+
+            if (slowReadMillis > 0) {
+                ctx.channel().config().setAutoRead(false);
+                ctx.executor().schedule(() -> ctx.channel().config().setAutoRead(true), slowReadMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private void handleResponse(SocketRestResponseModel response) {
+            if (response.isChunked()) {
+                PendingResponse pendingResponse = pendingResponses.get(response.getRequestId());
+                if (pendingResponse != null) {
+                    pendingResponse.header = response;
+                    pendingResponse.body = new ByteArrayOutputStream();
+                }
+                return;
+            }
+            PendingResponse pendingResponse = pendingResponses.remove(response.getRequestId());
+            if (pendingResponse != null) {
+                pendingResponse.future.complete(response);
+            }
+        }
+
+        private void handleResponseChunk(SocketRestResponseChunkModel chunk) {
+            PendingResponse pendingResponse = pendingResponses.get(chunk.getRequestId());
+            if (pendingResponse == null || pendingResponse.body == null) {
+                return;
+            }
+            if (chunk.getData() != null) {
+                pendingResponse.body.write(chunk.getData(), 0, chunk.getData().length);
+            }
+            if (chunk.getError() != null) {
+                fail(chunk.getRequestId(), new IOException(chunk.getError()));
+            } else if (chunk.isLast()) {
+                pendingResponses.remove(chunk.getRequestId());
+                pendingResponse.header.setResponse(pendingResponse.body.toByteArray());
+                pendingResponse.future.complete(pendingResponse.header);
+            }
+        }
+    }
+}
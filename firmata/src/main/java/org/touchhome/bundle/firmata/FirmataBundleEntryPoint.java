@@ -8,18 +8,19 @@ import org.springframework.stereotype.Component;
 import org.touchhome.bundle.api.BundleEntryPoint;
 import org.touchhome.bundle.api.EntityContext;
 import org.touchhome.bundle.api.Lang;
-import org.touchhome.bundle.api.model.Status;
 import org.touchhome.bundle.api.util.FlowMap;
 import org.touchhome.bundle.firmata.model.FirmataBaseEntity;
 import org.touchhome.bundle.firmata.model.FirmataNetworkEntity;
 import org.touchhome.bundle.firmata.provider.FirmataCommandPlugins;
+import org.touchhome.bundle.firmata.provider.FirmataDeviceRegistry;
 import org.touchhome.bundle.firmata.repository.FirmataDeviceRepository;
 
-import java.util.*;
-import java.util.concurrent.TimeUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.apache.commons.lang3.StringUtils.defaultString;
-import static org.touchhome.bundle.firmata.provider.command.FirmataCommand.SYSEX_PING;
 
 @Log4j2
 @Component
@@ -27,7 +28,7 @@ import static org.touchhome.bundle.firmata.provider.command.FirmataCommand.SYSEX
 public class FirmataBundleEntryPoint implements BundleEntryPoint {
 
     @Getter
-    private static final Map<String, UdpPayload> udpFoundDevices = new HashMap<>();
+    private static final Map<String, UdpPayload> udpFoundDevices = new ConcurrentHashMap<>();
 
     private final EntityContext entityContext;
 
@@ -37,7 +38,10 @@ public class FirmataBundleEntryPoint implements BundleEntryPoint {
     @Getter
     private final FirmataCommandPlugins firmataCommandPlugins;
 
+    private final FirmataDeviceRegistry firmataDeviceRegistry;
+
     public void init() {
+        firmataDeviceRegistry.init();
         restartFirmataProviders();
         this.entityContext.event().addEntityUpdateListener(FirmataBaseEntity.class, "firmata-restart-comm-listen", FirmataBaseEntity::restartCommunicator);
 
@@ -51,31 +55,13 @@ public class FirmataBundleEntryPoint implements BundleEntryPoint {
             }
             log.warn("Got udp notification on port 8266 with unknown payload: <{}>", payload);
         });
-
-        // ping firmata device if live status is online
-        this.entityContext.bgp().schedule("firmata-device-ping", 3, TimeUnit.MINUTES, () -> {
-            for (FirmataBaseEntity<?> firmataBaseEntity : entityContext.findAll(FirmataBaseEntity.class)) {
-                if (firmataBaseEntity.getJoined() == Status.ONLINE) {
-                    log.debug("Ping firmata device: <{}>", firmataBaseEntity.getTitle());
-                    firmataBaseEntity.getDevice().sendMessage(SYSEX_PING);
-                }
-            }
-        }, true);
     }
 
     // this method fires only from devices that support internet access
     public static boolean foundController(EntityContext entityContext, String board, String deviceID, String hostAddress, String headerConfirmItemsKey) {
         // check if we already have firmata device with deviceID
-        FirmataBaseEntity<?> device;
-        if (deviceID != null) {
-            device = entityContext.findAll(FirmataBaseEntity.class).stream()
-                    .filter(d -> Objects.equals(d.getIeeeAddress(), deviceID))
-                    .findAny().orElse(null);
-        } else {
-            device = entityContext.findAll(FirmataNetworkEntity.class).stream()
-                    .filter(d -> Objects.equals(d.getIp(), hostAddress))
-                    .findAny().orElse(null);
-        }
+        FirmataDeviceRegistry registry = entityContext.getBean(FirmataDeviceRegistry.class);
+        FirmataBaseEntity<?> device = deviceID != null ? registry.getByDeviceID(deviceID) : registry.getByIp(hostAddress);
 
         if (device != null) {
             if (device instanceof FirmataNetworkEntity) {
@@ -1,25 +1,31 @@
 package org.touchhome.bundle.firmata;
 
-import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.stereotype.Component;
 import org.touchhome.bundle.api.EntityContext;
 import org.touchhome.bundle.api.entity.micro.MicroControllerScanner;
-import org.touchhome.bundle.api.hardware.network.NetworkHardwareRepository;
 import org.touchhome.bundle.api.model.ProgressBar;
 import org.touchhome.bundle.api.service.scan.BaseItemsDiscovery;
 
-import java.util.*;
-import java.util.concurrent.Callable;
+import java.net.InetAddress;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 @Log4j2
 @Component
-@RequiredArgsConstructor
 public class FirmataNetworkControllerScanner implements MicroControllerScanner {
     private static final int port = 3132;
     private static final int timeout = 2000;
+    // open sockets at once, /24 network fits so it's scanned in about one timeout
+    private static final int maxConcurrent = 256;
+    // up to /20 network
+    private static final int maxHosts = 4094;
+    private static final long maxScanTime = TimeUnit.MINUTES.toMillis(5);
 
-    private final NetworkHardwareRepository networkHardwareRepository;
+    private final SubnetScanner subnetScanner = new SubnetScanner(timeout, maxConcurrent);
 
     @Override
     public String getName() {
@@ -27,18 +33,20 @@ public class FirmataNetworkControllerScanner implements MicroControllerScanner {
     }
 
     @Override
+    @SneakyThrows
     public BaseItemsDiscovery.DeviceScannerResult scan(EntityContext entityContext, ProgressBar progressBar, String headerConfirmButtonKey) {
         Set<String> existedDevices = new HashSet<>();
-        Map<String, Callable<Integer>> tasks = networkHardwareRepository.buildPingIpAddressTasks(log, Collections.singleton(port), timeout, (ipAddress, integer) -> {
+        List<InetAddress> addresses = SubnetScanner.getLocalSubnetHosts(maxHosts);
+        int rounds = (addresses.size() + maxConcurrent - 1) / maxConcurrent;
+        long deadline = System.currentTimeMillis() + Math.min(maxScanTime, (long) (rounds + 1) * timeout);
+
+        int foundDevices = subnetScanner.scan(addresses, port, deadline, (ipAddress, openPort) -> {
             if (!FirmataBundleEntryPoint.foundController(entityContext, null, null, ipAddress, headerConfirmButtonKey)) {
                 existedDevices.add(ipAddress);
             }
-        });
-
-        BaseItemsDiscovery.DeviceScannerResult result = new BaseItemsDiscovery.DeviceScannerResult();
-        List<Integer> availableIpAddresses = entityContext.bgp().runInBatchAndGet("firmata-ip-scan", 5 * 60, 8, tasks,
-                completedTaskCount -> progressBar.progress(100 / 256F * completedTaskCount, "Scanned " + completedTaskCount + " ip addresses"));
-        log.debug("Found {} devices", availableIpAddresses.size());
-        return new BaseItemsDiscovery.DeviceScannerResult(existedDevices.size(), availableIpAddresses.size() - existedDevices.size());
+        }, completedCount -> progressBar.progress(100F / addresses.size() * completedCount,
+                "Scanned " + completedCount + " ip addresses"));
+        log.debug("Found {} devices", foundDevices);
+        return new BaseItemsDiscovery.DeviceScannerResult(existedDevices.size(), foundDevices - existedDevices.size());
     }
 }
@@ -0,0 +1,208 @@
+package org.touchhome.bundle.firmata;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.InterfaceAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Check tcp port on many hosts from one thread. Non-blocking connects are started for up to maxConcurrent
+ * addresses at once and completed by selector, so scan of a subnet which fits into maxConcurrent takes
+ * about one connect timeout.
+ */
+@Log4j2
+class SubnetScanner {
+
+    private static final int PENDING = 0;
+    private static final int CONNECTED = 1;
+    private static final int FAILED = 2;
+
+    private final int connectTimeout;
+    private final int maxConcurrent;
+
+    SubnetScanner(int connectTimeout, int maxConcurrent) {
+        this.connectTimeout = connectTimeout;
+        this.maxConcurrent = maxConcurrent;
+    }
+
+    /**
+     * Host addresses of all site local ipv4 networks of this machine, without own addresses.
+     * Networks bigger than maxHosts are narrowed to maxHosts addresses around own address.
+     */
+    static List<InetAddress> getLocalSubnetHosts(int maxHosts) throws SocketException {
+        Set<InetAddress> hosts = new LinkedHashSet<>();
+        Set<InetAddress> ownAddresses = new LinkedHashSet<>();
+        for (NetworkInterface networkInterface : Collections.list(NetworkInterface.getNetworkInterfaces())) {
+            if (!networkInterface.isUp() || networkInterface.isLoopback()) {
+                continue;
+            }
+            for (InterfaceAddress interfaceAddress : networkInterface.getInterfaceAddresses()) {
+                InetAddress address = interfaceAddress.getAddress();
+                if (address instanceof Inet4Address && address.isSiteLocalAddress()) {
+                    ownAddresses.add(address);
+                    hosts.addAll(getSubnetHosts((Inet4Address) address, interfaceAddress.getNetworkPrefixLength(), maxHosts));
+                }
+            }
+        }
+        hosts.removeAll(ownAddresses);
+        return new ArrayList<>(hosts);
+    }
+
+    /**
+     * Host addresses of network without network and broadcast addresses.
+     */
+    static List<InetAddress> getSubnetHosts(Inet4Address address, int prefixLength, int maxHosts) {
+        // don't scan less than /24 even if interface reports tiny network
+        int hostBits = Math.max(8, 32 - prefixLength);
+        while (hostBits > 8 && (1L << hostBits) - 2 > maxHosts) {
+            hostBits--;
+        }
+        byte[] bytes = address.getAddress();
+        int ip = ((bytes[0] & 0xFF) << 24) | ((bytes[1] & 0xFF) << 16) | ((bytes[2] & 0xFF) << 8) | (bytes[3] & 0xFF);
+        int mask = (int) (0xFFFFFFFFL << hostBits);
+        int network = ip & mask;
+        int hostCount = (1 << hostBits) - 2;
+
+        List<InetAddress> hosts = new ArrayList<>(hostCount);
+        for (int host = 1; host <= hostCount; host++) {
+            int value = network | host;
+            try {
+                hosts.add(InetAddress.getByAddress(new byte[]{
+                        (byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value}));
+            } catch (IOException ignore) {
+                // only thrown for wrong array length
+            }
+        }
+        return hosts;
+    }
+
+    /**
+     * @param deadline   absolute time after which unfinished connects are dropped
+     * @param onFound    called from scanning thread for every address with open port
+     * @param onProgress called with count of finished addresses
+     * @return count of addresses with open port
+     */
+    int scan(List<InetAddress> addresses, int port, long deadline, BiConsumer<String, Integer> onFound,
+             IntConsumer onProgress) throws IOException {
+        int found = 0;
+        int finished = 0;
+        int next = 0;
+        int reported = 0;
+        try (Selector selector = Selector.open()) {
+            while ((next < addresses.size() || !selector.keys().isEmpty()) && System.currentTimeMillis() < deadline) {
+                // start new connects up to concurrency cap
+                while (next < addresses.size() && selector.keys().size() < maxConcurrent) {
+                    InetAddress address = addresses.get(next++);
+                    int status = startConnect(selector, address, port);
+                    if (status != PENDING) {
+                        finished++;
+                    }
+                    if (status == CONNECTED) {
+                        found++;
+                        onFound.accept(address.getHostAddress(), port);
+                    }
+                }
+                long now = System.currentTimeMillis();
+                selector.select(Math.max(1, Math.min(deadline - now, 50)));
+
+                Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+                while (iterator.hasNext()) {
+                    SelectionKey key = iterator.next();
+                    iterator.remove();
+                    ConnectAttempt attempt = (ConnectAttempt) key.attachment();
+                    boolean connected;
+                    try {
+                        connected = ((SocketChannel) key.channel()).finishConnect();
+                    } catch (IOException ex) {
+                        connected = false;
+                    }
+                    close(key);
+                    finished++;
+                    if (connected) {
+                        found++;
+                        onFound.accept(attempt.address.getHostAddress(), port);
+                    }
+                }
+
+                // drop connects without answer
+                now = System.currentTimeMillis();
+                for (SelectionKey key : selector.keys()) {
+                    if (key.isValid() && now - ((ConnectAttempt) key.attachment()).startedAt > connectTimeout) {
+                        close(key);
+                        finished++;
+                    }
+                }
+                // flush cancelled keys so they don't count against maxConcurrent
+                selector.selectNow();
+                if (finished != reported) {
+                    reported = finished;
+                    onProgress.accept(finished);
+                }
+            }
+            for (SelectionKey key : selector.keys()) {
+                close(key);
+            }
+        }
+        if (next < addresses.size() || finished < addresses.size()) {
+            log.warn("Scan deadline reached, checked {} of {} addresses", finished, addresses.size());
+        }
+        return found;
+    }
+
+    private int startConnect(Selector selector, InetAddress address, int port) {
+        SocketChannel channel = null;
+        try {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            if (channel.connect(new InetSocketAddress(address, port))) {
+                channel.close();
+                return CONNECTED;
+            }
+            channel.register(selector, SelectionKey.OP_CONNECT, new ConnectAttempt(address, System.currentTimeMillis()));
+            return PENDING;
+        } catch (IOException ex) {
+            log.debug("Unable to connect to <{}:{}>: {}", address.getHostAddress(), port, ex.getMessage());
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignore) {
+                }
+            }
+        }
+        return FAILED;
+    }
+
+    private static void close(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException ignore) {
+        }
+    }
+
+    private static class ConnectAttempt {
+        private final InetAddress address;
+        private final long startedAt;
+
+        ConnectAttempt(InetAddress address, long startedAt) {
+            this.address = address;
+            this.startedAt = startedAt;
+        }
+    }
+}
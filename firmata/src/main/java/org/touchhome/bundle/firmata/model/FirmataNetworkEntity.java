@@ -4,6 +4,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.firmata4j.IODevice;
 import org.firmata4j.firmata.FirmataDevice;
 import org.firmata4j.transport.NetworkTransport;
+import org.firmata4j.transport.TransportInterface;
 import org.touchhome.bundle.api.EntityContext;
 import org.touchhome.bundle.api.entity.BaseEntity;
 import org.touchhome.bundle.api.model.OptionModel;
@@ -13,8 +14,11 @@ import org.touchhome.bundle.api.ui.field.UIFieldType;
 import org.touchhome.bundle.api.ui.field.selection.UIFieldSelectValueOnEmpty;
 import org.touchhome.bundle.api.ui.field.selection.UIFieldSelection;
 import org.touchhome.bundle.firmata.FirmataBundleEntryPoint;
+import org.touchhome.bundle.firmata.provider.BatchingTransport;
 import org.touchhome.bundle.firmata.provider.FirmataDeviceCommunicator;
+import org.touchhome.bundle.firmata.provider.NioNetworkTransport;
 import org.touchhome.bundle.firmata.provider.command.PendingRegistrationContext;
+import org.touchhome.bundle.firmata.setting.FirmataSharedNetworkTransportSetting;
 
 import javax.persistence.Entity;
 import javax.validation.constraints.Pattern;
@@ -74,14 +78,26 @@ public final class FirmataNetworkEntity extends FirmataBaseEntity<FirmataNetwork
 
     private static class FirmataNetworkFirmataDeviceCommunicator extends FirmataDeviceCommunicator<FirmataNetworkEntity> {
 
+        private final EntityContext entityContext;
+
         public FirmataNetworkFirmataDeviceCommunicator(EntityContext entityContext, FirmataNetworkEntity entity) {
             super(entityContext, entity);
+            this.entityContext = entityContext;
         }
 
         @Override
         protected IODevice createIODevice(FirmataNetworkEntity entity) {
             String ip = entity.getIp();
-            return StringUtils.isEmpty(ip) ? null : new FirmataDevice(new NetworkTransport(ip + ":3132"));
+            if (StringUtils.isEmpty(ip)) {
+                return null;
+            }
+            TransportInterface networkTransport = entityContext.setting().getValue(FirmataSharedNetworkTransportSetting.class) ?
+                    new NioNetworkTransport(ip, 3132) : new NetworkTransport(ip + ":3132");
+            // merge small writes into one tcp packet
+            BatchingTransport transport = new BatchingTransport(networkTransport);
+            FirmataDevice device = new FirmataDevice(transport);
+            setBatchingTransport(transport);
+            return device;
         }
 
         @Override
@@ -0,0 +1,183 @@
+package org.touchhome.bundle.firmata.provider;
+
+import lombok.extern.log4j.Log4j2;
+import org.firmata4j.Parser;
+import org.firmata4j.transport.TransportInterface;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transport decorator which merges messages written within WINDOW_MILLIS into one write of delegate transport.
+ * Digital writes are collapsed: DIGITAL_MESSAGE of the same port and SET_DIGITAL_PIN_VALUE of the same pin
+ * replace previous one. Transport keeps state of every port from written messages, once whole port is known
+ * single pin writes are folded into port DIGITAL_MESSAGE. Message is only merged with previous one if no other
+ * message was written between them, so message order is kept. Port state is forgotten on reset and pin mode change.
+ */
+@Log4j2
+public class BatchingTransport implements TransportInterface {
+
+    private static final long WINDOW_MILLIS = 2;
+    private static final int MAX_BATCH_SIZE = 1024;
+    private static final int DIGITAL_MESSAGE = 0x90;
+    private static final int SET_PIN_MODE = 0xF4;
+    private static final int SET_DIGITAL_PIN_VALUE = 0xF5;
+    private static final int SYSTEM_RESET = 0xFF;
+    private static final int PORTS = 16;
+    private static final int PINS = PORTS * 8;
+    private static final int ALL_BITS = 0xFF;
+
+    private static final ScheduledExecutorService flushScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "firmata-batch-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final TransportInterface delegate;
+
+    // guarded by this
+    private byte[] buffer = new byte[256];
+    private int length;
+    // offset of port DIGITAL_MESSAGE in buffer or -1
+    private final int[] portMessages = new int[PORTS];
+    // offset of pin SET_DIGITAL_PIN_VALUE in buffer or -1
+    private final int[] pinMessages = new int[PINS];
+    // last written state of port and which of its bits are known
+    private final int[] portValues = new int[PORTS];
+    private final int[] portKnownBits = new int[PORTS];
+    // messages before barrier can't be merged, other message was written after them
+    private int barrier;
+    private boolean flushScheduled;
+    private int holdCount;
+
+    public BatchingTransport(TransportInterface delegate) {
+        this.delegate = delegate;
+        Arrays.fill(portMessages, -1);
+        Arrays.fill(pinMessages, -1);
+    }
+
+    @Override
+    public void start() throws IOException {
+        forgetPortState();
+        delegate.start();
+    }
+
+    @Override
+    public void stop() throws IOException {
+        flush();
+        forgetPortState();
+        delegate.stop();
+    }
+
+    @Override
+    public void setParser(Parser parser) {
+        delegate.setParser(parser);
+    }
+
+    @Override
+    public synchronized void write(byte[] bytes) throws IOException {
+        int command = bytes[0] & 0xFF;
+        if (bytes.length == 3 && (command & 0xF0) == DIGITAL_MESSAGE) {
+            int port = command & 0x0F;
+            portValues[port] = ((bytes[1] & 0x7F) | ((bytes[2] & 0x7F) << 7)) & ALL_BITS;
+            portKnownBits[port] = ALL_BITS;
+            writePortMessage(port);
+        } else if (bytes.length == 3 && command == SET_DIGITAL_PIN_VALUE && bytes[1] >= 0) {
+            writePinValue(bytes[1], bytes[2] != 0, bytes);
+        } else {
+            if (command == SYSTEM_RESET) {
+                forgetPortState();
+            } else if (bytes.length == 3 && command == SET_PIN_MODE && bytes[1] >= 0) {
+                portKnownBits[bytes[1] >> 3] &= ~(1 << (bytes[1] & 7));
+            }
+            append(bytes);
+            barrier = length;
+        }
+        if (length >= MAX_BATCH_SIZE) {
+            flush();
+        } else if (!flushScheduled && holdCount == 0) {
+            flushScheduled = true;
+            flushScheduler.schedule(this::scheduledFlush, WINDOW_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Keep writes in batch until release, i.e. to set several pins at once.
+     */
+    public synchronized void hold() {
+        holdCount++;
+    }
+
+    public synchronized void release() throws IOException {
+        if (--holdCount == 0) {
+            flush();
+        }
+    }
+
+    public synchronized void flush() throws IOException {
+        flushScheduled = false;
+        if (length == 0) {
+            return;
+        }
+        Arrays.fill(portMessages, -1);
+        Arrays.fill(pinMessages, -1);
+        byte[] batch = Arrays.copyOf(buffer, length);
+        length = 0;
+        barrier = 0;
+        delegate.write(batch);
+    }
+
+    private synchronized void forgetPortState() {
+        Arrays.fill(portKnownBits, 0);
+    }
+
+    private synchronized void scheduledFlush() {
+        if (holdCount > 0) {
+            // flushed on release
+            flushScheduled = false;
+            return;
+        }
+        try {
+            flush();
+        } catch (IOException ex) {
+            log.error("Unable to write firmata batch: {}", ex.getMessage());
+        }
+    }
+
+    private void writePinValue(int pin, boolean value, byte[] bytes) {
+        int port = pin >> 3;
+        int bit = 1 << (pin & 7);
+        portValues[port] = value ? portValues[port] | bit : portValues[port] & ~bit;
+        portKnownBits[port] |= bit;
+        if (portKnownBits[port] == ALL_BITS) {
+            writePortMessage(port);
+        } else if (pinMessages[pin] >= barrier) {
+            buffer[pinMessages[pin] + 2] = bytes[2];
+        } else {
+            pinMessages[pin] = length;
+            append(bytes);
+        }
+    }
+
+    private void writePortMessage(int port) {
+        int offset = portMessages[port];
+        if (offset < barrier) {
+            offset = length;
+            append(new byte[]{(byte) (DIGITAL_MESSAGE | port), 0, 0});
+            portMessages[port] = offset;
+        }
+        buffer[offset + 1] = (byte) (portValues[port] & 0x7F);
+        buffer[offset + 2] = (byte) ((portValues[port] >> 7) & 0x7F);
+    }
+
+    private void append(byte[] bytes) {
+        if (length + bytes.length > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + bytes.length));
+        }
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+}
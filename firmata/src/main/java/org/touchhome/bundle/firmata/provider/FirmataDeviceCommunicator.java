@@ -1,7 +1,9 @@
 package org.touchhome.bundle.firmata.provider;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 import lombok.SneakyThrows;
 import lombok.extern.log4j.Log4j2;
 import org.firmata4j.Consumer;
@@ -20,10 +22,16 @@ import org.touchhome.bundle.firmata.model.FirmataBaseEntity;
 import org.touchhome.bundle.firmata.provider.command.FirmataCommand;
 import org.touchhome.bundle.firmata.provider.command.FirmataCommandPlugin;
 import org.touchhome.bundle.firmata.provider.command.FirmataOneWireResponseDataCommand;
+import org.touchhome.bundle.firmata.provider.util.AnalogCaptureBuffer;
 import org.touchhome.bundle.firmata.provider.util.THUtil;
+import org.touchhome.bundle.firmata.setting.FirmataAnalogDeadbandSetting;
+import org.touchhome.bundle.firmata.setting.FirmataAnalogHysteresisSetting;
+import org.touchhome.bundle.firmata.setting.FirmataPinEventMinIntervalSetting;
 import org.touchhome.bundle.firmata.setting.FirmataWatchDogIntervalSetting;
 
 import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 @Log4j2
@@ -36,7 +44,15 @@ public abstract class FirmataDeviceCommunicator<T extends FirmataBaseEntity<T>>
     private final EntityContext entityContext;
     private final FirmataCommandPlugins firmataCommandPlugins;
     private final BroadcastLockManager broadcastLockManager;
+    @Getter
+    private final FirmataPinEventFilter pinEventFilter = new FirmataPinEventFilter(this::onTrailingPinChange);
+    // pin index -> opt-in capture of analog reports
+    private final Map<Byte, AnalogCaptureBuffer> analogCaptures = new ConcurrentHashMap<>();
     private T entity;
+    // not null if device transport merges writes
+    @Getter
+    @Setter(AccessLevel.PROTECTED)
+    private BatchingTransport batchingTransport;
 
     @Getter
     private IODeviceWrapper device;
@@ -54,6 +70,13 @@ public abstract class FirmataDeviceCommunicator<T extends FirmataBaseEntity<T>>
         this.firmataCommandPlugins = entityContext.getBean(FirmataCommandPlugins.class);
         this.broadcastLockManager = entityContext.getBean(BroadcastLockManager.class);
 
+        this.entityContext.setting().listenValueAndGet(FirmataAnalogDeadbandSetting.class,
+                "firmata-deadband-" + entity.getEntityID(), pinEventFilter::setAnalogDeadband);
+        this.entityContext.setting().listenValueAndGet(FirmataAnalogHysteresisSetting.class,
+                "firmata-hysteresis-" + entity.getEntityID(), pinEventFilter::setAnalogHysteresis);
+        this.entityContext.setting().listenValueAndGet(FirmataPinEventMinIntervalSetting.class,
+                "firmata-pin-interval-" + entity.getEntityID(), value -> pinEventFilter.setMinInterval(value));
+
         this.entityContext.event().addEntityUpdateListener(entity.getEntityID(),
                 "firmata-update-listener" + entity.getEntityID(),
                 (java.util.function.Consumer<T>) t -> FirmataDeviceCommunicator.this.entityUpdated(t, false));
@@ -132,6 +155,7 @@ public abstract class FirmataDeviceCommunicator<T extends FirmataBaseEntity<T>>
 
     @Override
     public void accept(Event event) {
+        // handlers may decode payload in place, body array is not shared
         ByteBuffer payload = ByteBuffer.wrap((byte[]) event.getBodyItem("sysexCustomMessage"));
         byte commandID = payload.get();
         FirmataCommandPlugin handler = firmataCommandPlugins.getFirmataCommandPlugin(commandID);
@@ -160,13 +184,43 @@ public abstract class FirmataDeviceCommunicator<T extends FirmataBaseEntity<T>>
         entityContext.event().fireEvent(firmataErrorEvent);
     }
 
+    /**
+     * Start capture of pin analog reports into window of windowSize samples. Sampling interval must match
+     * device sampling interval.
+     */
+    public void startAnalogCapture(byte pin, int windowSize, long samplingInterval) {
+        analogCaptures.put(pin, new AnalogCaptureBuffer(windowSize, samplingInterval));
+    }
+
+    public void stopAnalogCapture(byte pin) {
+        analogCaptures.remove(pin);
+    }
+
+    public AnalogCaptureBuffer getAnalogCapture(byte pin) {
+        return analogCaptures.get(pin);
+    }
+
     @Override
     public void onPinChange(IOEvent event) {
+        if (!analogCaptures.isEmpty()) {
+            AnalogCaptureBuffer capture = analogCaptures.get(event.getPin().getIndex());
+            if (capture != null) {
+                capture.add((int) event.getPin().getValue(), event.getTimestamp());
+            }
+        }
         if (entity.getTarget() != -1) {
-            broadcastLockManager.signalAll(entity.getTarget() + "_pin_" + event.getPin().getIndex(), event.getPin().getValue());
+            String key = pinEventFilter.accept(entity.getTarget(), event.getPin());
+            if (key != null) {
+                broadcastLockManager.signalAll(key, event.getPin().getValue());
+            }
         }
     }
 
+    // analog change held back by min interval
+    private void onTrailingPinChange(String key, long value) {
+        broadcastLockManager.signalAll(key, value);
+    }
+
     @Override
     public void onMessageReceive(IOEvent event, String message) {
         log.info("Firmata <{}> got message: <{}>", entity.getTitle(), message);
@@ -0,0 +1,133 @@
+package org.touchhome.bundle.firmata.provider;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.stereotype.Component;
+import org.touchhome.bundle.api.EntityContext;
+import org.touchhome.bundle.api.model.Status;
+import org.touchhome.bundle.firmata.model.FirmataBaseEntity;
+import org.touchhome.bundle.firmata.model.FirmataNetworkEntity;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.touchhome.bundle.firmata.provider.command.FirmataCommand.SYSEX_PING;
+
+/**
+ * In-memory view of firmata entities indexed by entityID, device ID and ip address. Loaded once and kept
+ * in sync by entity listeners, so udp announcements and scanners don't query database.
+ * Also pings every online device once per HEARTBEAT_INTERVAL, so firmware keeps its registration. Every device
+ * gets own random phase inside interval, so pings are spread in time. Firmware doesn't answer ping, device
+ * liveness is checked by FirmataWatchdog.
+ */
+@Log4j2
+@Component
+@RequiredArgsConstructor
+public class FirmataDeviceRegistry {
+
+    private static final long HEARTBEAT_INTERVAL = TimeUnit.MINUTES.toMillis(3);
+    private static final int HEARTBEAT_TICK_SECONDS = 5;
+
+    private final EntityContext entityContext;
+
+    private final Map<String, FirmataBaseEntity<?>> entities = new ConcurrentHashMap<>();
+    private final Map<String, String> deviceIdToEntityID = new ConcurrentHashMap<>();
+    private final Map<String, String> ipToEntityID = new ConcurrentHashMap<>();
+    private final Map<String, Heartbeat> heartbeats = new ConcurrentHashMap<>();
+
+    public void init() {
+        for (FirmataBaseEntity<?> entity : entityContext.findAll(FirmataBaseEntity.class)) {
+            put(entity);
+        }
+        entityContext.event().addEntityUpdateListener(FirmataBaseEntity.class, "firmata-device-registry",
+                (java.util.function.Consumer<FirmataBaseEntity<?>>) this::put);
+
+        entityContext.bgp().schedule("firmata-device-heartbeat", HEARTBEAT_TICK_SECONDS, TimeUnit.SECONDS,
+                this::heartbeat, true);
+    }
+
+    public FirmataBaseEntity<?> getByDeviceID(String deviceID) {
+        String entityID = deviceIdToEntityID.get(deviceID);
+        return entityID == null ? null : entities.get(entityID);
+    }
+
+    public FirmataNetworkEntity getByIp(String ip) {
+        String entityID = ipToEntityID.get(ip);
+        return entityID == null ? null : (FirmataNetworkEntity) entities.get(entityID);
+    }
+
+    public Collection<FirmataBaseEntity<?>> getEntities() {
+        return entities.values();
+    }
+
+    private void put(FirmataBaseEntity<?> entity) {
+        String entityID = entity.getEntityID();
+        FirmataBaseEntity<?> previous = entities.put(entityID, entity);
+        if (previous == null) {
+            entityContext.event().addEntityRemovedListener(entityID, "firmata-device-registry-" + entityID,
+                    (java.util.function.Consumer<FirmataBaseEntity<?>>) this::remove);
+        } else {
+            unindex(previous);
+        }
+        if (entity.getIeeeAddress() != null) {
+            deviceIdToEntityID.put(entity.getIeeeAddress(), entityID);
+        }
+        if (entity instanceof FirmataNetworkEntity && ((FirmataNetworkEntity) entity).getIp() != null) {
+            ipToEntityID.put(((FirmataNetworkEntity) entity).getIp(), entityID);
+        }
+    }
+
+    private void remove(FirmataBaseEntity<?> entity) {
+        FirmataBaseEntity<?> previous = entities.remove(entity.getEntityID());
+        if (previous != null) {
+            unindex(previous);
+        }
+        heartbeats.remove(entity.getEntityID());
+    }
+
+    private void unindex(FirmataBaseEntity<?> entity) {
+        if (entity.getIeeeAddress() != null) {
+            deviceIdToEntityID.remove(entity.getIeeeAddress(), entity.getEntityID());
+        }
+        if (entity instanceof FirmataNetworkEntity && ((FirmataNetworkEntity) entity).getIp() != null) {
+            ipToEntityID.remove(((FirmataNetworkEntity) entity).getIp(), entity.getEntityID());
+        }
+    }
+
+    private void heartbeat() {
+        long now = System.currentTimeMillis();
+        for (FirmataBaseEntity<?> entity : entities.values()) {
+            FirmataDeviceCommunicator communicator = entity.getFirmataDeviceCommunicator();
+            if (entity.getJoined() != Status.ONLINE || communicator == null || communicator.getDevice() == null) {
+                heartbeats.remove(entity.getEntityID());
+                continue;
+            }
+            Heartbeat heartbeat = heartbeats.computeIfAbsent(entity.getEntityID(), id -> new Heartbeat(now));
+            try {
+                heartbeat.check(entity, communicator, now);
+            } catch (Exception ex) {
+                log.warn("Unable to ping firmata device <{}>: {}", entity.getTitle(), ex.getMessage());
+            }
+        }
+    }
+
+    private static class Heartbeat {
+        private long nextPingAt;
+
+        Heartbeat(long now) {
+            this.nextPingAt = now + ThreadLocalRandom.current().nextLong(HEARTBEAT_INTERVAL);
+        }
+
+        void check(FirmataBaseEntity<?> entity, FirmataDeviceCommunicator communicator, long now) {
+            if (now >= nextPingAt) {
+                // ping even busy device, firmware forgets registration when not pinged
+                log.debug("Ping firmata device: <{}>", entity.getTitle());
+                nextPingAt = now + HEARTBEAT_INTERVAL;
+                communicator.getDevice().sendMessage(SYSEX_PING);
+            }
+        }
+    }
+}
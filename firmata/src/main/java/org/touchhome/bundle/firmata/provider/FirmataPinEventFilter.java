@@ -0,0 +1,177 @@
+package org.touchhome.bundle.firmata.provider;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.firmata4j.Pin;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Decide which pin changes reported by firmata reach broadcast layer. Digital pins delivered only on edge,
+ * analog pins only when value moved more than deadband from last delivered value (plus hysteresis when
+ * direction reversed) and not often than minInterval. Change held back by minInterval isn't lost: latest such
+ * value is passed to trailingListener once interval passed, unless newer change was delivered meanwhile or
+ * value returned within deadband of delivered one. Deadband and hysteresis are 0 by default, so only exact
+ * repeats are filtered until configured.
+ * Broadcast keys are cached per pin and rebuilt only when target changed, pin settings survive that.
+ * accept() called from firmata reader thread only, configuration may be changed from any thread.
+ */
+public class FirmataPinEventFilter {
+
+    // firmata protocol supports up to 128 pins
+    private static final int MAX_PINS = 128;
+
+    private static final ScheduledExecutorService trailingScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "firmata-pin-trailing");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final PinState[] pinStates = new PinState[MAX_PINS];
+    // key and value of trailing change, called from scheduler thread
+    private final BiConsumer<String, Long> trailingListener;
+    @Getter
+    private final AtomicLong deliveredEvents = new AtomicLong();
+    @Getter
+    private final AtomicLong suppressedEvents = new AtomicLong();
+
+    @Setter
+    private volatile int analogDeadband;
+    @Setter
+    private volatile int analogHysteresis;
+    @Setter
+    private volatile long minInterval;
+
+    public FirmataPinEventFilter(BiConsumer<String, Long> trailingListener) {
+        this.trailingListener = trailingListener;
+    }
+
+    /**
+     * @return broadcast key if change should be delivered, null if suppressed
+     */
+    public String accept(short target, Pin pin) {
+        int index = pin.getIndex() & 0xFF;
+        if (index >= MAX_PINS) {
+            return target + "_pin_" + index;
+        }
+        PinState state = getPinState(index);
+        long value = pin.getValue();
+        synchronized (state) {
+            String key = state.getKey(target);
+            if (state.delivered) {
+                if (!isMeaningfulChange(state, pin.getMode(), value)) {
+                    suppressedEvents.incrementAndGet();
+                    // value is back near delivered one, held change is outdated
+                    state.trailingKey = null;
+                    return null;
+                }
+                long sinceDelivered = System.currentTimeMillis() - state.deliveredAt;
+                if (pin.getMode() == Pin.Mode.ANALOG && minInterval > 0 && sinceDelivered < minInterval) {
+                    suppressedEvents.incrementAndGet();
+                    holdTrailing(state, key, value, minInterval - sinceDelivered);
+                    return null;
+                }
+            }
+            deliver(state, value);
+            return key;
+        }
+    }
+
+    /**
+     * Override analog deadband/hysteresis of single pin. Negative value restores common setting.
+     */
+    public void setPinDeadband(byte pinIndex, int deadband, int hysteresis) {
+        int index = pinIndex & 0xFF;
+        if (index < MAX_PINS) {
+            PinState state = getPinState(index);
+            state.deadband = deadband;
+            state.hysteresis = hysteresis;
+        }
+    }
+
+    private synchronized PinState getPinState(int index) {
+        PinState state = pinStates[index];
+        if (state == null) {
+            state = new PinState(index);
+            pinStates[index] = state;
+        }
+        return state;
+    }
+
+    private void deliver(PinState state, long value) {
+        state.direction = state.delivered ? Long.signum(value - state.value) : 0;
+        state.value = value;
+        state.deliveredAt = System.currentTimeMillis();
+        state.delivered = true;
+        state.trailingKey = null;
+        deliveredEvents.incrementAndGet();
+    }
+
+    // called with state lock held
+    private void holdTrailing(PinState state, String key, long value, long delay) {
+        boolean scheduled = state.trailingKey != null;
+        state.trailingKey = key;
+        state.trailingValue = value;
+        if (!scheduled) {
+            trailingScheduler.schedule(() -> emitTrailing(state), delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void emitTrailing(PinState state) {
+        String key;
+        long value;
+        synchronized (state) {
+            key = state.trailingKey;
+            if (key == null) {
+                // newer change delivered meanwhile
+                return;
+            }
+            value = state.trailingValue;
+            deliver(state, value);
+        }
+        trailingListener.accept(key, value);
+    }
+
+    private boolean isMeaningfulChange(PinState state, Pin.Mode mode, long value) {
+        if (mode != Pin.Mode.ANALOG) {
+            return value != state.value;
+        }
+        long delta = value - state.value;
+        int deadband = state.deadband >= 0 ? state.deadband : analogDeadband;
+        int hysteresis = state.deadband >= 0 ? state.hysteresis : analogHysteresis;
+        // moving back requires bigger step, so noise around threshold doesn't flip value
+        long threshold = Long.signum(delta) == -state.direction ? deadband + hysteresis : deadband;
+        return delta != 0 && Math.abs(delta) >= Math.max(threshold, 1);
+    }
+
+    private static class PinState {
+        private final int index;
+        private short keyTarget = -1;
+        private String key;
+        private long value;
+        private int direction;
+        private long deliveredAt;
+        private boolean delivered;
+        // not null while change held back by minInterval waits for delivery
+        private String trailingKey;
+        private long trailingValue;
+        private volatile int deadband = -1;
+        private volatile int hysteresis;
+
+        PinState(int index) {
+            this.index = index;
+        }
+
+        String getKey(short target) {
+            if (key == null || keyTarget != target) {
+                keyTarget = target;
+                key = target + "_pin_" + index;
+            }
+            return key;
+        }
+    }
+}
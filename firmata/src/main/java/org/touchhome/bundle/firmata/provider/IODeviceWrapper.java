@@ -1,16 +1,20 @@
 package org.touchhome.bundle.firmata.provider;
 
+import com.pivovarit.function.ThrowingRunnable;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
 import lombok.extern.log4j.Log4j2;
 import org.firmata4j.IODevice;
 import org.touchhome.bundle.firmata.provider.command.FirmataCommand;
+import org.touchhome.bundle.firmata.provider.command.FirmataOneWireResponseDataCommand;
 import org.touchhome.bundle.firmata.provider.util.OneWireDevice;
+import org.touchhome.bundle.firmata.provider.util.SysexEncoder;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.function.Consumer;
+import java.util.concurrent.CompletableFuture;
 
 import static org.firmata4j.firmata.parser.FirmataToken.*;
 import static org.touchhome.bundle.firmata.provider.util.OneWireUtils.*;
@@ -23,9 +27,11 @@ public class IODeviceWrapper {
     @Getter
     private final IOOneWire ioOneWire = new IOOneWire();
     private final FirmataDeviceCommunicator firmataDeviceCommunicator;
+    // guarded by itself
+    private final SysexEncoder encoder = new SysexEncoder();
     private byte messageID;
 
-    public byte nextMessageId() {
+    public synchronized byte nextMessageId() {
         if (messageID > 125) {
             messageID = 0;
         }
@@ -34,34 +40,54 @@ public class IODeviceWrapper {
     }
 
     public byte sendMessage(FirmataCommand command) {
-        return sendMessage(command, 0, byteBuffer -> {
-        });
+        synchronized (encoder) {
+            byte id = beginMessage(command);
+            send(encoder.end());
+            return id;
+        }
     }
 
-    @SneakyThrows
     public byte sendMessage(FirmataCommand command, long longValue) {
-        return sendMessage(command, Long.BYTES, payload -> payload.putLong(longValue));
+        synchronized (encoder) {
+            byte id = beginMessage(command);
+            send(encoder.putLong(longValue).end());
+            return id;
+        }
     }
 
     public long generateUniqueIDOnRegistrationSuccess() {
         return firmataDeviceCommunicator.generateUniqueIDOnRegistrationSuccess();
     }
 
-    @SneakyThrows
-    private byte sendMessage(FirmataCommand command, int length, Consumer<ByteBuffer> consumer) {
-        ByteBuffer payload = ByteBuffer.allocate(6 + length);
-        payload.put(START_SYSEX);
-        payload.put(command.getValue());
+    private byte beginMessage(FirmataCommand command) {
         byte id = nextMessageId();
-        payload.put(id);
-        payload.putShort(firmataDeviceCommunicator.getEntity().getTarget());
-        consumer.accept(payload);
-        payload.put(END_SYSEX);
-
-        ioDevice.sendMessage(payload.array());
+        encoder.begin(command.getValue()).put(id).putShort(firmataDeviceCommunicator.getEntity().getTarget());
         return id;
     }
 
+    @SneakyThrows
+    private void send(byte[] message) {
+        ioDevice.sendMessage(message);
+    }
+
+    /**
+     * Run writes as one batch, i.e. several pins on the same port become one port update.
+     * Without batching transport writes are sent as usual.
+     */
+    public void batch(ThrowingRunnable<Exception> writes) throws Exception {
+        BatchingTransport transport = firmataDeviceCommunicator.getBatchingTransport();
+        if (transport == null) {
+            writes.run();
+            return;
+        }
+        transport.hold();
+        try {
+            writes.run();
+        } finally {
+            transport.release();
+        }
+    }
+
     @SneakyThrows
     public void sendMessage(byte[] bytes) {
         this.ioDevice.sendMessage(bytes);
@@ -69,6 +95,8 @@ public class IODeviceWrapper {
 
     public class IOOneWire {
 
+        private static final int NONE = -1;
+
         /**
          * Configure the passed pin as the controller in a 1-wire bus.
          * Pass as enableParasiticPower true if you want the data pin to power the bus.
@@ -82,9 +110,9 @@ public class IODeviceWrapper {
          * Reads data from a device on the bus and invokes the passed callback.
          */
         public int sendOneWireRead(byte pin, ByteBuffer address, byte numBytesToRead) {
-            Integer correlationId = (int) Math.floor(Math.random() * 255);
-            log.info("WRITE correlationId: {}", correlationId);
-            sendOneWireRequest(pin, ONEWIRE_READ_REQUEST_BIT, address, numBytesToRead, correlationId, null, null);
+            int correlationId = firmataDeviceCommunicator.getOneWireCommand().nextCorrelationId();
+            log.debug("WRITE correlationId: {}", correlationId);
+            sendOneWireRequest(pin, ONEWIRE_READ_REQUEST_BIT, address, numBytesToRead, correlationId, NONE, null);
             return correlationId;
         }
 
@@ -93,14 +121,14 @@ public class IODeviceWrapper {
          * need to give a device attached to the bus time to do a calculation.
          */
         public void sendOneWireDelay(byte pin, int delay) {
-            sendOneWireRequest(pin, ONEWIRE_DELAY_REQUEST_BIT, null, null, null, delay, null);
+            sendOneWireRequest(pin, ONEWIRE_DELAY_REQUEST_BIT, null, NONE, NONE, delay, null);
         }
 
         /**
          * Resets all devices on the bus.
          */
         public void sendOneWireReset(byte pin) {
-            sendOneWireRequest(pin, ONEWIRE_RESET_REQUEST_BIT, null, null, null, null, null);
+            sendOneWireRequest(pin, ONEWIRE_RESET_REQUEST_BIT, null, NONE, NONE, NONE, null);
         }
 
         /**
@@ -110,7 +138,7 @@ public class IODeviceWrapper {
         public void sendOneWireWrite(byte pin, ByteBuffer address, ByteBuffer data, Integer delay, boolean reset) {
             byte subCommand = (byte) (ONEWIRE_WRITE_REQUEST_BIT | ONEWIRE_SELECT_REQUEST_BIT
                     | (delay == null ? 0 : ONEWIRE_DELAY_REQUEST_BIT) | (reset ? ONEWIRE_RESET_REQUEST_BIT : 0));
-            sendOneWireRequest(pin, subCommand, address, null, null, delay, data);
+            sendOneWireRequest(pin, subCommand, address, NONE, NONE, delay == null ? NONE : delay, data);
         }
 
         /**
@@ -118,11 +146,45 @@ public class IODeviceWrapper {
          * number of bytes and invokes the passed callback.
          */
         public byte[] sendOneWireWriteAndRead(byte pin, ByteBuffer address, ByteBuffer data, byte numBytesToRead, Integer delay, boolean reset) {
-            Integer correlationId = (int) Math.floor(Math.random() * 255);
+            int correlationId = firmataDeviceCommunicator.getOneWireCommand().nextCorrelationId();
             byte subCommand = (byte) (ONEWIRE_WRITE_REQUEST_BIT | ONEWIRE_READ_REQUEST_BIT | ONEWIRE_SELECT_REQUEST_BIT
                     | (delay == null ? 0 : ONEWIRE_DELAY_REQUEST_BIT) | (reset ? ONEWIRE_RESET_REQUEST_BIT : 0));
             return firmataDeviceCommunicator.getOneWireCommand().waitForValue(correlationId,
-                    () -> sendOneWireRequest(pin, subCommand, address, numBytesToRead, correlationId, delay, data));
+                    () -> sendOneWireRequest(pin, subCommand, address, numBytesToRead, correlationId, delay == null ? NONE : delay, data));
+        }
+
+        /**
+         * Sends the same data to every passed device and reads numBytesToRead from each. All requests are sent
+         * before waiting for first reply.
+         *
+         * @return replies in order of addresses, null item if device didn't answer
+         */
+        public List<byte[]> sendOneWireWriteAndRead(byte pin, List<ByteBuffer> addresses, ByteBuffer data, byte numBytesToRead, boolean reset) {
+            byte subCommand = (byte) (ONEWIRE_WRITE_REQUEST_BIT | ONEWIRE_READ_REQUEST_BIT | ONEWIRE_SELECT_REQUEST_BIT
+                    | (reset ? ONEWIRE_RESET_REQUEST_BIT : 0));
+            FirmataOneWireResponseDataCommand oneWireCommand = firmataDeviceCommunicator.getOneWireCommand();
+            int[] correlationIds = new int[addresses.size()];
+            List<CompletableFuture<byte[]>> futures = new ArrayList<>(addresses.size());
+            for (int i = 0; i < addresses.size(); i++) {
+                int correlationId = oneWireCommand.nextCorrelationId();
+                ByteBuffer address = addresses.get(i);
+                correlationIds[i] = correlationId;
+                futures.add(oneWireCommand.sendForValue(correlationId,
+                        () -> sendOneWireRequest(pin, subCommand, address, numBytesToRead, correlationId, NONE, data)));
+            }
+            List<byte[]> result = new ArrayList<>(addresses.size());
+            for (int i = 0; i < futures.size(); i++) {
+                result.add(oneWireCommand.waitForValue(correlationIds[i], futures.get(i)));
+            }
+            return result;
+        }
+
+        /**
+         * Writes data to all devices on the bus at once (SKIP ROM), i.e. start conversion on every sensor.
+         */
+        public void sendOneWireSkipWrite(byte pin, ByteBuffer data, boolean reset) {
+            byte subCommand = (byte) (ONEWIRE_WRITE_REQUEST_BIT | ONEWIRE_SKIP_REQUEST_BIT | (reset ? ONEWIRE_RESET_REQUEST_BIT : 0));
+            sendOneWireRequest(pin, subCommand, null, NONE, NONE, NONE, data);
         }
 
         /**
@@ -149,66 +211,41 @@ public class IODeviceWrapper {
         }
 
         /**
-         * Searches for 1-wire devices on the bus.  The passed callback should accept
-         * and error argument and an array of device identifiers.
+         * Send 1-wire request. Optional numeric arguments are NONE when absent.
          */
-        @SneakyThrows
-        private void sendOneWireRequest(byte pin, Byte subcommand, ByteBuffer address, Byte numBytesToRead,
-                                        Integer correlationId, Integer delay, ByteBuffer dataToWrite) {
-            byte[] data = dataToWrite == null ? new byte[0] : dataToWrite.array();
-            int length = (address == null ? 0 : 8) + (numBytesToRead == null ? 0 : 2) + (correlationId == null ? 0 : 2) + (delay == null ? 0 : 4);
-            ByteBuffer bytes = ByteBuffer.allocate(length + data.length);
-
-            if (address != null || numBytesToRead != null || correlationId != null || delay != null || dataToWrite != null) {
-                subcommand = subcommand == null ? ONEWIRE_WITHDATA_REQUEST_BITS : subcommand;
+        private void sendOneWireRequest(byte pin, byte subcommand, ByteBuffer address, int numBytesToRead,
+                                        int correlationId, int delay, ByteBuffer dataToWrite) {
+            synchronized (encoder) {
+                encoder.begin(ONEWIRE_DATA).put(subcommand).put(pin);
+                if (address != null) {
+                    encoder.raw(address.array(), 0, address.array().length);
+                }
+                if (numBytesToRead != NONE) {
+                    encoder.raw(numBytesToRead, 2);
+                }
+                if (correlationId != NONE) {
+                    encoder.raw(correlationId, 2);
+                }
+                if (delay != NONE) {
+                    encoder.raw(delay, 4);
+                }
+                if (dataToWrite != null) {
+                    encoder.raw(dataToWrite.array(), 0, dataToWrite.array().length);
+                }
+                send(encoder.pack7Bit().end());
             }
-
-            if (address != null) {
-                bytes.put(address.array());
-            }
-
-            if (numBytesToRead != null) {
-                bytes.put((byte) (numBytesToRead & 0xFF));
-                bytes.put((byte) ((numBytesToRead >> 8) & 0xFF));
-            }
-
-            if (correlationId != null) {
-                bytes.put((byte) (correlationId & 0xFF));
-                bytes.put((byte) ((correlationId >> 8) & 0xFF));
-            }
-
-            if (delay != null) {
-                bytes.put((byte) (delay & 0xFF));
-                bytes.put((byte) ((delay >> 8) & 0xFF));
-                bytes.put((byte) ((delay >> 16) & 0xFF));
-                bytes.put((byte) ((delay >> 24) & 0xFF));
-            }
-            for (int i = 0; i < data.length; i++) {
-                bytes.put(data[i]);
-            }
-
-            sendRaw(ONEWIRE_DATA, subcommand, pin, to7BitArray(bytes.array()));
         }
 
         private void sendRaw(byte command, byte subcommand, byte pin) {
-            sendRaw(command, subcommand, pin, new byte[0]);
+            synchronized (encoder) {
+                send(encoder.begin(command).put(subcommand).put(pin).end());
+            }
         }
 
         private void sendRaw(byte command, byte subcommand, byte pin, byte data) {
-            sendRaw(command, subcommand, pin, new byte[]{data});
-        }
-
-        @SneakyThrows
-        private void sendRaw(byte command, byte subcommand, byte pin, byte[] data) {
-            ByteBuffer payload = ByteBuffer.allocate(5 + data.length);
-            payload.put(START_SYSEX);
-            payload.put(command);
-            payload.put(subcommand);
-            payload.put(pin);
-            payload.put(data);
-            payload.put(END_SYSEX);
-            ioDevice.sendMessage(payload.array());
-            // log.info("Send raw: " + getString(payload.array()).replaceAll("..", "$0 "));
+            synchronized (encoder) {
+                send(encoder.begin(command).put(subcommand).put(pin).put(data).end());
+            }
         }
 
         /*public String getString(byte[] b) throws Exception {
@@ -0,0 +1,303 @@
+package org.touchhome.bundle.firmata.provider;
+
+import lombok.extern.log4j.Log4j2;
+import org.firmata4j.Parser;
+import org.firmata4j.transport.TransportInterface;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Network transport which multiplexes all firmata network boards over one shared selector thread instead of
+ * reader thread per socket. Received bytes are handed to parser from small shared pool, in order per board.
+ * Lost connection is reconnected by the transport itself with backoff, other boards aren't affected. Messages
+ * not written before connection was lost are dropped.
+ * Note: this removes only socket reader threads. FirmataDevice still starts own FirmataParser thread per board,
+ * parser is created and started by firmata4j and can't be replaced from transport.
+ */
+@Log4j2
+public class NioNetworkTransport implements TransportInterface {
+
+    private static final long CONNECT_TIMEOUT = TimeUnit.SECONDS.toMillis(5);
+    private static final long MIN_RECONNECT_DELAY = TimeUnit.SECONDS.toMillis(1);
+    private static final long MAX_RECONNECT_DELAY = TimeUnit.SECONDS.toMillis(30);
+
+    private static final EventLoop eventLoop = new EventLoop();
+    // parse received bytes and schedule reconnects
+    private static final ScheduledExecutorService workers = Executors.newScheduledThreadPool(2, r -> {
+        Thread thread = new Thread(r, "firmata-nio-worker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final String host;
+    private final int port;
+    private final String address;
+    private final Queue<ByteBuffer> outbound = new ConcurrentLinkedQueue<>();
+    private final Queue<byte[]> inbound = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean parseScheduled = new AtomicBoolean();
+
+    private Parser parser;
+    private volatile SocketChannel channel;
+    private volatile SelectionKey key;
+    private volatile boolean started;
+    private long reconnectDelay = MIN_RECONNECT_DELAY;
+
+    public NioNetworkTransport(String host, int port) {
+        this.host = host;
+        this.port = port;
+        this.address = host + ":" + port;
+    }
+
+    @Override
+    public void setParser(Parser parser) {
+        this.parser = parser;
+    }
+
+    /**
+     * Blocks until first connection established, same as blocking transport.
+     */
+    @Override
+    public void start() throws IOException {
+        started = true;
+        CompletableFuture<Void> connected = connect();
+        try {
+            connected.get(CONNECT_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            stop();
+            throw new IOException("Unable to connect to " + address + " in " + CONNECT_TIMEOUT + "ms");
+        } catch (Exception ex) {
+            stop();
+            throw new IOException("Unable to connect to " + address + ": " + ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    public void stop() {
+        started = false;
+        eventLoop.execute(this::close);
+        outbound.clear();
+        inbound.clear();
+    }
+
+    @Override
+    public void write(byte[] bytes) throws IOException {
+        SelectionKey key = this.key;
+        if (key == null || !key.isValid()) {
+            throw new IOException("Not connected to " + address);
+        }
+        outbound.add(ByteBuffer.wrap(bytes));
+        eventLoop.execute(() -> {
+            // connecting socket gets OP_WRITE once connected
+            if (key.isValid() && ((SocketChannel) key.channel()).isConnected()) {
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            }
+        });
+    }
+
+    private CompletableFuture<Void> connect() {
+        CompletableFuture<Void> connected = new CompletableFuture<>();
+        eventLoop.execute(() -> {
+            // stop() may run after reconnect checked started, its close task ran before this one
+            if (!started) {
+                connected.completeExceptionally(new IOException("Transport to " + address + " stopped"));
+                return;
+            }
+            try {
+                SocketChannel channel = SocketChannel.open();
+                this.channel = channel;
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                channel.connect(new InetSocketAddress(host, port));
+                this.key = channel.register(eventLoop.selector, SelectionKey.OP_CONNECT, new Handler(connected));
+            } catch (IOException ex) {
+                close();
+                connected.completeExceptionally(ex);
+            }
+        });
+        return connected;
+    }
+
+    // selector thread only
+    private void close() {
+        if (key != null) {
+            key.cancel();
+            key = null;
+        }
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignore) {
+            }
+            channel = null;
+        }
+    }
+
+    // selector thread only
+    private void connectionLost(IOException ex) {
+        close();
+        // partially written message must not continue on new connection, board would read it as garbage
+        outbound.clear();
+        if (started) {
+            log.warn("Lost connection to firmata <{}>: {}. Reconnect in {}ms", address, ex.getMessage(), reconnectDelay);
+            long delay = reconnectDelay;
+            reconnectDelay = Math.min(MAX_RECONNECT_DELAY, reconnectDelay * 2);
+            workers.schedule(this::reconnect, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void reconnect() {
+        if (started) {
+            connect().whenComplete((ignore, ex) -> {
+                if (ex != null && started) {
+                    eventLoop.execute(() -> connectionLost(ex instanceof IOException ? (IOException) ex : new IOException(ex)));
+                }
+            });
+        }
+    }
+
+    private void received(byte[] bytes) {
+        inbound.add(bytes);
+        if (parseScheduled.compareAndSet(false, true)) {
+            workers.execute(this::parseInbound);
+        }
+    }
+
+    private void parseInbound() {
+        byte[] bytes;
+        while ((bytes = inbound.poll()) != null) {
+            try {
+                parser.parse(bytes);
+            } catch (Exception ex) {
+                log.error("Error while parse firmata <{}> message: {}", address, ex.getMessage());
+            }
+        }
+        parseScheduled.set(false);
+        // bytes may arrive after poll() returned null but before flag was reset
+        if (!inbound.isEmpty() && parseScheduled.compareAndSet(false, true)) {
+            workers.execute(this::parseInbound);
+        }
+    }
+
+    /**
+     * Socket events of one connection, called from selector thread.
+     */
+    private class Handler {
+        private final CompletableFuture<Void> connected;
+
+        Handler(CompletableFuture<Void> connected) {
+            this.connected = connected;
+        }
+
+        void handle(SelectionKey key, ByteBuffer readBuffer) {
+            try {
+                if (key.isConnectable()) {
+                    ((SocketChannel) key.channel()).finishConnect();
+                    key.interestOps(SelectionKey.OP_READ | (outbound.isEmpty() ? 0 : SelectionKey.OP_WRITE));
+                    reconnectDelay = MIN_RECONNECT_DELAY;
+                    connected.complete(null);
+                    return;
+                }
+                if (key.isReadable()) {
+                    readBuffer.clear();
+                    int read = ((SocketChannel) key.channel()).read(readBuffer);
+                    if (read < 0) {
+                        throw new IOException("Connection closed by board");
+                    }
+                    if (read > 0) {
+                        received(Arrays.copyOf(readBuffer.array(), read));
+                    }
+                }
+                if (key.isValid() && key.isWritable()) {
+                    ByteBuffer buffer;
+                    while ((buffer = outbound.peek()) != null) {
+                        ((SocketChannel) key.channel()).write(buffer);
+                        if (buffer.hasRemaining()) {
+                            // socket buffer full, continue on next OP_WRITE
+                            return;
+                        }
+                        outbound.poll();
+                    }
+                    key.interestOps(SelectionKey.OP_READ);
+                }
+            } catch (IOException ex) {
+                if (!connected.isDone()) {
+                    close();
+                    connected.completeExceptionally(ex);
+                } else {
+                    connectionLost(ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * One selector thread shared by all transports. Tasks passed to execute() run on selector thread.
+     */
+    private static class EventLoop implements Runnable {
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        // used by selector thread only
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(4096);
+        private Selector selector;
+        private Thread thread;
+
+        synchronized void execute(Runnable task) {
+            if (thread == null) {
+                try {
+                    selector = Selector.open();
+                } catch (IOException ex) {
+                    throw new IllegalStateException("Unable to open firmata selector", ex);
+                }
+                thread = new Thread(this, "firmata-nio-selector");
+                thread.setDaemon(true);
+                thread.start();
+            }
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                try {
+                    selector.select();
+                    Runnable task;
+                    while ((task = tasks.poll()) != null) {
+                        try {
+                            task.run();
+                        } catch (Exception ex) {
+                            log.error("Error in firmata selector task", ex);
+                        }
+                    }
+                    Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+                    while (iterator.hasNext()) {
+                        SelectionKey key = iterator.next();
+                        iterator.remove();
+                        if (key.isValid()) {
+                            ((Handler) key.attachment()).handle(key, readBuffer);
+                        }
+                    }
+                } catch (ClosedSelectorException ex) {
+                    return;
+                } catch (Exception ex) {
+                    log.error("Error in firmata selector loop", ex);
+                }
+            }
+        }
+    }
+}
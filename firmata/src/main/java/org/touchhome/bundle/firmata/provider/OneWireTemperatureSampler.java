@@ -0,0 +1,153 @@
+package org.touchhome.bundle.firmata.provider;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.touchhome.bundle.firmata.model.FirmataBaseEntity;
+import org.touchhome.bundle.firmata.provider.util.OneWireDevice;
+import org.touchhome.bundle.firmata.provider.util.OneWireUtils;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background DS18B20 sampler of one 1-Wire bus (board pin). Each cycle starts conversion on all sensors at once
+ * with SKIP ROM, waits conversion time and reads scratchpads of all requested addresses without waiting
+ * each other. Valid (crc checked) temperatures cached per address, so readers never wait for bus. Sample older
+ * than MAX_SAMPLE_AGE (sensor or board not answering) isn't returned.
+ * Sampler stops itself when nobody read it for IDLE_TIMEOUT.
+ */
+@Log4j2
+public class OneWireTemperatureSampler {
+
+    public static final byte TEMPERATURE_FAMILY = 0x28;
+    private static final byte CONVERT_TEMPERATURE_COMMAND = 0x44;
+    private static final byte READ_SCRATCHPAD_COMMAND = (byte) 0xBE;
+    private static final byte SCRATCHPAD_SIZE = 9;
+    // 12 bit resolution conversion time
+    private static final long CONVERSION_TIME = 750;
+    private static final long SAMPLE_INTERVAL = TimeUnit.SECONDS.toMillis(2);
+    private static final long IDLE_TIMEOUT = TimeUnit.MINUTES.toMillis(1);
+    // few missed sample cycles
+    private static final long MAX_SAMPLE_AGE = 3 * (SAMPLE_INTERVAL + CONVERSION_TIME);
+
+    private final byte pin;
+    private final ScheduledExecutorService scheduler;
+    private final Map<Long, Sample> samples = new ConcurrentHashMap<>();
+    // address -> last time when temperature was requested
+    private final Map<Long, Long> addresses = new ConcurrentHashMap<>();
+
+    private volatile FirmataBaseEntity<?> entity;
+    private ScheduledFuture<?> samplerFuture;
+    private boolean configured;
+
+    public OneWireTemperatureSampler(byte pin, ScheduledExecutorService scheduler) {
+        this.pin = pin;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Get latest sample of address and start sampling it if not yet. If address has no sample, waits up to
+     * one sample cycle.
+     *
+     * @return sample or null if sensor not answered yet or last answer is older than MAX_SAMPLE_AGE
+     */
+    public Sample getSample(FirmataBaseEntity<?> entity, long address) throws InterruptedException {
+        this.entity = entity;
+        boolean newAddress = addresses.put(address, System.currentTimeMillis()) == null;
+        ensureStarted();
+        Sample sample = samples.get(address);
+        if (sample == null && newAddress) {
+            long waitUntil = System.currentTimeMillis() + SAMPLE_INTERVAL + CONVERSION_TIME;
+            while ((sample = samples.get(address)) == null && System.currentTimeMillis() < waitUntil) {
+                Thread.sleep(50);
+            }
+        }
+        if (sample != null && System.currentTimeMillis() - sample.sampledAt > MAX_SAMPLE_AGE) {
+            return null;
+        }
+        return sample;
+    }
+
+    private synchronized void ensureStarted() {
+        if (samplerFuture == null) {
+            samplerFuture = scheduler.scheduleWithFixedDelay(this::sample, 0, SAMPLE_INTERVAL, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Runs under same monitor as ensureStarted, so address added by concurrent getSample either keeps sampler
+     * running or starts it again after stop.
+     *
+     * @return true if sampler stopped
+     */
+    private synchronized boolean stopIfIdle() {
+        long now = System.currentTimeMillis();
+        addresses.values().removeIf(lastRequest -> now - lastRequest > IDLE_TIMEOUT);
+        samples.keySet().retainAll(addresses.keySet());
+        if (!addresses.isEmpty()) {
+            return false;
+        }
+        log.info("Stop idle DS18B20 sampler on pin <{}>", pin);
+        samplerFuture.cancel(false);
+        samplerFuture = null;
+        configured = false;
+        samples.clear();
+        return true;
+    }
+
+    private void sample() {
+        try {
+            if (stopIfIdle()) {
+                return;
+            }
+            IODeviceWrapper device = entity.getDevice();
+            if (device == null) {
+                return;
+            }
+            IODeviceWrapper.IOOneWire oneWire = device.getIoOneWire();
+            if (!configured) {
+                oneWire.sendOneWireConfig(pin, true);
+                configured = true;
+            }
+            oneWire.sendOneWireSkipWrite(pin, ByteBuffer.allocate(1).put(CONVERT_TEMPERATURE_COMMAND), true);
+            Thread.sleep(CONVERSION_TIME);
+
+            List<Long> sampledAddresses = new ArrayList<>(addresses.keySet());
+            List<ByteBuffer> addressBuffers = new ArrayList<>(sampledAddresses.size());
+            for (Long address : sampledAddresses) {
+                addressBuffers.add(OneWireDevice.toByteArray(address));
+            }
+            List<byte[]> scratchpads = oneWire.sendOneWireWriteAndRead(pin, addressBuffers,
+                    ByteBuffer.allocate(1).put(READ_SCRATCHPAD_COMMAND), SCRATCHPAD_SIZE, true);
+            long sampledAt = System.currentTimeMillis();
+            for (int i = 0; i < scratchpads.size(); i++) {
+                byte[] scratchpad = scratchpads.get(i);
+                if (scratchpad == null || scratchpad.length < SCRATCHPAD_SIZE || OneWireUtils.crc8(scratchpad) != scratchpad[8]) {
+                    log.debug("Drop invalid DS18B20 <{}> scratchpad on pin <{}>", Long.toHexString(sampledAddresses.get(i)), pin);
+                    continue;
+                }
+                float temperature = (float) (short) (((scratchpad[1] & 0xFF) << 8) | (scratchpad[0] & 0xFF)) / 16;
+                samples.put(sampledAddresses.get(i), new Sample(temperature, sampledAt));
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (Exception ex) {
+            configured = false;
+            log.error("Error while sample DS18B20 on pin <{}>: {}", pin, ex.getMessage());
+        }
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class Sample {
+        private final float temperature;
+        private final long sampledAt;
+    }
+}
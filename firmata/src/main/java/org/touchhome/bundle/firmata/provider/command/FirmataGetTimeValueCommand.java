@@ -14,7 +14,7 @@ import static org.touchhome.bundle.firmata.provider.command.FirmataCommand.SYSEX
 @RequiredArgsConstructor
 public class FirmataGetTimeValueCommand implements FirmataCommandPlugin {
 
-    private final LockManager<Long> lockManager = new LockManager<>();
+    private final RequestCorrelator<String, Long> timeRequests = new RequestCorrelator<>();
 
     @Override
     public FirmataCommand getCommand() {
@@ -22,12 +22,12 @@ public class FirmataGetTimeValueCommand implements FirmataCommandPlugin {
     }
 
     public Long waitForValue(FirmataBaseEntity entity, byte messageID) {
-        return lockManager.await(entity.getEntityID() + messageID, 10000, null);
+        return timeRequests.request(entity.getEntityID() + messageID, 10000, null);
     }
 
     @Override
     public void handle(IODeviceWrapper device, FirmataBaseEntity entity, byte messageID, ByteBuffer payload) {
-        lockManager.signalAll(entity.getEntityID() + messageID, THUtil.getLong(payload));
+        timeRequests.complete(entity.getEntityID() + messageID, THUtil.getLong(payload));
     }
 
     @Override
@@ -9,7 +9,9 @@ import org.touchhome.bundle.firmata.provider.util.OneWireDevice;
 import org.touchhome.bundle.firmata.provider.util.OneWireUtils;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static org.touchhome.bundle.firmata.provider.command.FirmataCommand.ONEWIRE_DATA;
 
@@ -19,19 +21,37 @@ import static org.touchhome.bundle.firmata.provider.command.FirmataCommand.ONEWI
 public class FirmataOneWireResponseDataCommand implements FirmataCommandPlugin {
 
     private static final String EVENT = "1-wire-%d-%d";
-    private final LockManager<Object> lockManager = new LockManager<>();
+    private static final int TIMEOUT = 5000;
+
+    private final RequestCorrelator<Integer, byte[]> readRequests = new RequestCorrelator<>();
+    private final RequestCorrelator<String, List<OneWireDevice>> searchRequests = new RequestCorrelator<>();
 
     @Override
     public FirmataCommand getCommand() {
         return ONEWIRE_DATA;
     }
 
-    public byte[] waitForValue(Integer correlationId, Runnable beforeWaitRunnable) {
-        return (byte[]) lockManager.await("1-wire-rp-" + correlationId, 5000, beforeWaitRunnable);
+    /**
+     * @return 16 bit correlation id for 1-wire read request
+     */
+    public int nextCorrelationId() {
+        return readRequests.nextId();
+    }
+
+    public byte[] waitForValue(int correlationId, Runnable sender) {
+        return readRequests.request(correlationId, TIMEOUT, sender);
+    }
+
+    public CompletableFuture<byte[]> sendForValue(int correlationId, Runnable sender) {
+        return readRequests.send(correlationId, sender);
+    }
+
+    public byte[] waitForValue(int correlationId, CompletableFuture<byte[]> future) {
+        return readRequests.await(correlationId, future, TIMEOUT);
     }
 
-    public List<OneWireDevice> waitForDevices(byte subCommandID, byte pin, Runnable beforeWaitRunnable) {
-        return (List<OneWireDevice>) lockManager.await(String.format(EVENT, subCommandID, pin), 5000, beforeWaitRunnable);
+    public List<OneWireDevice> waitForDevices(byte subCommandID, byte pin, Runnable sender) {
+        return searchRequests.request(String.format(EVENT, subCommandID, pin), TIMEOUT, sender);
     }
 
     @Override
@@ -41,15 +61,15 @@ public class FirmataOneWireResponseDataCommand implements FirmataCommandPlugin {
         switch (type) {
             case OneWireUtils.ONEWIRE_SEARCH_REPLY:
             case OneWireUtils.ONEWIRE_SEARCH_ALARMS_REPLY:
-                this.lockManager.signalAll(String.format(EVENT, type, pin), OneWireUtils.readDevices(payload));
+                this.searchRequests.complete(String.format(EVENT, type, pin), OneWireUtils.readDevices(payload));
                 break;
             case OneWireUtils.ONEWIRE_READ_REPLY:
-                byte[] decoded = OneWireUtils.from7BitArray(payload);
-                int correlationId = ((decoded[1] << 8) | decoded[0]) & 0xFF;
-
-                byte[] array = new byte[decoded.length - 2];
-                System.arraycopy(decoded, 2, array, 0, array.length);
-                this.lockManager.signalAll("1-wire-rp-" + correlationId, array);
+                // decode in place, only read data is copied out
+                byte[] array = payload.array();
+                int offset = payload.arrayOffset() + payload.position();
+                int decodedLength = OneWireUtils.from7Bit(array, offset, payload.remaining(), array, offset);
+                int correlationId = (array[offset] & 0xFF) | ((array[offset + 1] & 0xFF) << 8);
+                this.readRequests.complete(correlationId, Arrays.copyOfRange(array, offset + 2, offset + decodedLength));
                 break;
             default:
                 log.error("Unable to find onewire type: " + type);
@@ -0,0 +1,138 @@
+package org.touchhome.bundle.firmata.provider.command;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Match firmata replies to requests. Every outstanding request owns future by key, so many requests may be in
+ * flight on one board, and requests with same key (i.e. 1-wire search on same pin) share one reply.
+ * Replies received before request registered waiting are kept ORPHAN_TTL ms. Reply for key which timed out
+ * within TIMED_OUT_TTL ms is late reply of that request and dropped, so it isn't returned to next request.
+ */
+@Log4j2
+class RequestCorrelator<K, T> {
+
+    private static final long ORPHAN_TTL = 2000;
+    private static final long TIMED_OUT_TTL = 30000;
+
+    private final Map<K, CompletableFuture<T>> pendingRequests = new ConcurrentHashMap<>();
+    private final Map<K, Orphan<T>> orphanReplies = new ConcurrentHashMap<>();
+    // key to time when its request timed out
+    private final Map<K, Long> timedOutRequests = new ConcurrentHashMap<>();
+    private final AtomicInteger correlationId = new AtomicInteger();
+
+    /**
+     * @return next 16 bit correlation id, wraps after 0xFFFF
+     */
+    public int nextId() {
+        return correlationId.getAndIncrement() & 0xFFFF;
+    }
+
+    /**
+     * Register request, run sender and wait reply.
+     *
+     * @return reply or null if not received in timeoutMillis
+     */
+    public T request(K key, long timeoutMillis, Runnable sender) {
+        return await(key, send(key, sender), timeoutMillis);
+    }
+
+    /**
+     * Register request and run sender without waiting, so many requests may be sent before first reply.
+     * Returned future must be passed to await to release request.
+     */
+    public CompletableFuture<T> send(K key, Runnable sender) {
+        Orphan<T> orphan = orphanReplies.remove(key);
+        if (orphan != null && !orphan.isExpired(System.currentTimeMillis())) {
+            return CompletableFuture.completedFuture(orphan.value);
+        }
+        CompletableFuture<T> future = new CompletableFuture<>();
+        CompletableFuture<T> existed = pendingRequests.putIfAbsent(key, future);
+        if (existed != null) {
+            return existed;
+        }
+        if (sender != null) {
+            try {
+                sender.run();
+            } catch (RuntimeException ex) {
+                pendingRequests.remove(key, future);
+                future.completeExceptionally(ex);
+                throw ex;
+            }
+        }
+        return future;
+    }
+
+    /**
+     * @return reply or null if not received in timeoutMillis
+     */
+    public T await(K key, CompletableFuture<T> future, long timeoutMillis) {
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            log.warn("Firmata reply <{}> not received in {}ms", key, timeoutMillis);
+            if (pendingRequests.remove(key, future)) {
+                timedOutRequests.put(key, System.currentTimeMillis());
+            }
+            return null;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException ex) {
+            log.error("Firmata request <{}> failed", key, ex.getCause());
+            return null;
+        } finally {
+            pendingRequests.remove(key, future);
+        }
+    }
+
+    /**
+     * Complete request with key. Called from firmata reader thread.
+     */
+    public void complete(K key, T value) {
+        CompletableFuture<T> future = pendingRequests.remove(key);
+        if (future != null) {
+            future.complete(value);
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (Iterator<Orphan<T>> iterator = orphanReplies.values().iterator(); iterator.hasNext(); ) {
+            if (iterator.next().isExpired(now)) {
+                iterator.remove();
+            }
+        }
+        timedOutRequests.values().removeIf(timedOut -> now - timedOut > TIMED_OUT_TTL);
+        if (timedOutRequests.remove(key) != null) {
+            log.debug("Drop late firmata reply <{}>", key);
+            return;
+        }
+        log.debug("Firmata reply <{}> has no waiting request", key);
+        orphanReplies.put(key, new Orphan<>(value, now));
+    }
+
+    int getPendingRequests() {
+        return pendingRequests.size();
+    }
+
+    private static class Orphan<T> {
+        private final T value;
+        private final long received;
+
+        Orphan(T value, long received) {
+            this.value = value;
+            this.received = received;
+        }
+
+        boolean isExpired(long now) {
+            return now - received > ORPHAN_TTL;
+        }
+    }
+}
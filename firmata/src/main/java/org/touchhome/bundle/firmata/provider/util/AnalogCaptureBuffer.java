@@ -0,0 +1,125 @@
+package org.touchhome.bundle.firmata.provider.util;
+
+import lombok.Getter;
+
+/**
+ * Fixed size ring buffer of analog samples. Sum, sum of squares and value histogram are updated on every
+ * add/evict, so window statistics don't iterate samples. Analog values are small non negative integers
+ * (up to 14 bit in firmata) so histogram is cheap and gives exact percentiles.
+ * Firmata reports only changed values, so missed reports between two changes are filled with held value
+ * using sampling interval.
+ */
+public class AnalogCaptureBuffer {
+
+    private final int[] samples;
+    @Getter
+    private final long samplingInterval;
+    private int[] histogram = new int[1024];
+
+    private int head;
+    @Getter
+    private int size;
+    private long sum;
+    private long sumOfSquares;
+    private int min = Integer.MAX_VALUE;
+    private int max = Integer.MIN_VALUE;
+    private long lastSampleTime;
+
+    public AnalogCaptureBuffer(int capacity, long samplingInterval) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capture capacity must be positive");
+        }
+        this.samples = new int[capacity];
+        this.samplingInterval = samplingInterval;
+    }
+
+    /**
+     * Add reported value received at time. Previous value repeated for every sampling interval without report.
+     */
+    public synchronized void add(int value, long time) {
+        if (size > 0 && samplingInterval > 0) {
+            long missed = Math.min((time - lastSampleTime) / samplingInterval - 1, samples.length);
+            int heldValue = samples[(head - 1 + samples.length) % samples.length];
+            for (long i = 0; i < missed; i++) {
+                add(heldValue);
+            }
+        }
+        add(value);
+        lastSampleTime = time;
+    }
+
+    private void add(int value) {
+        value = Math.max(0, value);
+        if (size == samples.length) {
+            evict(samples[head]);
+        }
+        size++;
+        samples[head] = value;
+        head = (head + 1) % samples.length;
+
+        if (value >= histogram.length) {
+            int[] grown = new int[Math.max(histogram.length * 2, Integer.highestOneBit(value) << 1)];
+            System.arraycopy(histogram, 0, grown, 0, histogram.length);
+            histogram = grown;
+        }
+        histogram[value]++;
+        sum += value;
+        sumOfSquares += (long) value * value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    private void evict(int value) {
+        histogram[value]--;
+        size--;
+        sum -= value;
+        sumOfSquares -= (long) value * value;
+        if (size == 0) {
+            min = Integer.MAX_VALUE;
+            max = Integer.MIN_VALUE;
+        } else if (histogram[value] == 0) {
+            // window still has samples between old min and max
+            while (histogram[min] == 0) {
+                min++;
+            }
+            while (histogram[max] == 0) {
+                max--;
+            }
+        }
+    }
+
+    public synchronized Integer getMin() {
+        return size == 0 ? null : min;
+    }
+
+    public synchronized Integer getMax() {
+        return size == 0 ? null : max;
+    }
+
+    public synchronized Double getMean() {
+        return size == 0 ? null : (double) sum / size;
+    }
+
+    public synchronized Double getRms() {
+        return size == 0 ? null : Math.sqrt((double) sumOfSquares / size);
+    }
+
+    /**
+     * @param percent 0..100
+     * @return smallest sample which is greater or equal than percent of window samples
+     */
+    public synchronized Integer getPercentile(double percent) {
+        if (size == 0) {
+            return null;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percent)) / 100 * size));
+        long count = 0;
+        for (int value = min; value <= max; value++) {
+            count += histogram[value];
+            if (count >= rank) {
+                return value;
+            }
+        }
+        return max;
+    }
+}
@@ -58,33 +58,41 @@ public final class OneWireUtils {
     public static byte[] from7BitArray(ByteBuffer payload) {
         byte[] encoded = new byte[payload.remaining()];
         payload.get(encoded);
-
-        int expectedBytes = encoded.length * 7 >> 3;
-        ByteBuffer buffer = ByteBuffer.allocate(expectedBytes);
-        for (int i = 0; i < expectedBytes; i++) {
-            int j = i << 3;
-            int pos = (j / 7) >>> 0;
-            int shift = j % 7;
-            buffer.put((byte) ((encoded[pos] >> shift) | ((encoded[pos + 1] << (7 - shift)) & 0xFF)));
-        }
-        return buffer.array();
+        byte[] decoded = new byte[encoded.length * 7 >> 3];
+        from7Bit(encoded, 0, encoded.length, decoded, 0);
+        return decoded;
     }
 
     public static byte[] to7BitArray(byte[] data) {
+        byte[] encoded = new byte[packed7BitLength(data.length)];
+        to7Bit(data, 0, data.length, encoded, 0);
+        return encoded;
+    }
+
+    public static int packed7BitLength(int length) {
+        return (length * 8 + 6) / 7;
+    }
+
+    /**
+     * Pack bytes into 7 bit bytes (firmata sysex data).
+     *
+     * @return number of bytes written to dst, see packed7BitLength
+     */
+    public static int to7Bit(byte[] src, int srcOffset, int length, byte[] dst, int dstOffset) {
+        int out = dstOffset;
         int shift = 0;
         int previous = 0;
-        ByteBuffer output = ByteBuffer.allocate(data.length * 2);
-        for (byte dataByte : data) {
-            int datum = dataByte & 0xff; // convert to avoid negative numbers
+        for (int i = srcOffset; i < srcOffset + length; i++) {
+            int datum = src[i] & 0xff; // convert to avoid negative numbers
 
             if (shift == 0) {
-                output.put((byte) (datum & 0x7f));
+                dst[out++] = (byte) (datum & 0x7f);
                 shift++;
                 previous = datum >> 7;
             } else {
-                output.put((byte) (((datum << shift) & 0x7f) | previous));
+                dst[out++] = (byte) (((datum << shift) & 0x7f) | previous);
                 if (shift == 6) {
-                    output.put((byte) (datum >> 1));
+                    dst[out++] = (byte) (datum >> 1);
                     shift = 0;
                 } else {
                     shift++;
@@ -94,11 +102,24 @@ public final class OneWireUtils {
         }
 
         if (shift > 0) {
-            output.put((byte) previous);
+            dst[out++] = (byte) previous;
         }
-        byte[] result = new byte[output.position()];
-        System.arraycopy(output.array(), 0, result, 0, result.length);
+        return out - dstOffset;
+    }
 
-        return result;
+    /**
+     * Unpack 7 bit bytes. Decoded data is shorter than encoded so src and dst may be the same array and offset.
+     *
+     * @return number of decoded bytes
+     */
+    public static int from7Bit(byte[] src, int srcOffset, int length, byte[] dst, int dstOffset) {
+        int expectedBytes = length * 7 >> 3;
+        for (int i = 0; i < expectedBytes; i++) {
+            int j = i << 3;
+            int pos = srcOffset + j / 7;
+            int shift = j % 7;
+            dst[dstOffset + i] = (byte) ((src[pos] >> shift) | ((src[pos + 1] << (7 - shift)) & 0xFF));
+        }
+        return expectedBytes;
     }
 }
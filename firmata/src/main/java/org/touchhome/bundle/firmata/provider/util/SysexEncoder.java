@@ -0,0 +1,104 @@
+package org.touchhome.bundle.firmata.provider.util;
+
+import static org.firmata4j.firmata.parser.FirmataToken.END_SYSEX;
+import static org.firmata4j.firmata.parser.FirmataToken.START_SYSEX;
+
+/**
+ * Reusable sysex message writer of one device. Message is built in preallocated buffer and copied into
+ * array cached per message length (firmata4j sends whole array), so sending allocates nothing after warm up.
+ * Not thread safe: caller holds encoder monitor from begin() until returned message is sent, array is
+ * reused by next message of same length.
+ */
+public final class SysexEncoder {
+
+    public static final int MAX_MESSAGE_LENGTH = 512;
+
+    private final byte[] buffer = new byte[MAX_MESSAGE_LENGTH];
+    // not packed data, written to buffer by pack7Bit()
+    private final byte[] raw = new byte[MAX_MESSAGE_LENGTH / 2];
+    private final byte[][] messages = new byte[MAX_MESSAGE_LENGTH + 1][];
+    private int position;
+    private int rawLength;
+
+    public SysexEncoder begin(byte command) {
+        position = 0;
+        rawLength = 0;
+        buffer[position++] = START_SYSEX;
+        buffer[position++] = command;
+        return this;
+    }
+
+    public SysexEncoder put(byte value) {
+        buffer[position++] = value;
+        return this;
+    }
+
+    public SysexEncoder put(byte[] src, int offset, int length) {
+        System.arraycopy(src, offset, buffer, position, length);
+        position += length;
+        return this;
+    }
+
+    /**
+     * Big endian, same as ByteBuffer.putShort
+     */
+    public SysexEncoder putShort(short value) {
+        buffer[position++] = (byte) (value >> 8);
+        buffer[position++] = (byte) value;
+        return this;
+    }
+
+    /**
+     * Big endian, same as ByteBuffer.putLong
+     */
+    public SysexEncoder putLong(long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buffer[position++] = (byte) (value >> shift);
+        }
+        return this;
+    }
+
+    public SysexEncoder raw(byte value) {
+        raw[rawLength++] = value;
+        return this;
+    }
+
+    public SysexEncoder raw(byte[] src, int offset, int length) {
+        System.arraycopy(src, offset, raw, rawLength, length);
+        rawLength += length;
+        return this;
+    }
+
+    /**
+     * Little endian, lowest numBytes bytes of value
+     */
+    public SysexEncoder raw(int value, int numBytes) {
+        for (int i = 0; i < numBytes; i++) {
+            raw[rawLength++] = (byte) (value >> (i * 8));
+        }
+        return this;
+    }
+
+    /**
+     * Append collected raw bytes packed to 7 bit
+     */
+    public SysexEncoder pack7Bit() {
+        position += OneWireUtils.to7Bit(raw, 0, rawLength, buffer, position);
+        rawLength = 0;
+        return this;
+    }
+
+    /**
+     * @return complete message, valid until next message with same length
+     */
+    public byte[] end() {
+        buffer[position++] = END_SYSEX;
+        byte[] message = messages[position];
+        if (message == null) {
+            message = new byte[position];
+            messages[position] = message;
+        }
+        System.arraycopy(buffer, 0, message, 0, position);
+        return message;
+    }
+}
@@ -0,0 +1,26 @@
+package org.touchhome.bundle.firmata.setting;
+
+import org.touchhome.bundle.api.setting.SettingPluginSlider;
+
+public class FirmataAnalogHysteresisSetting implements SettingPluginSlider {
+
+    @Override
+    public Integer getMin() {
+        return 0;
+    }
+
+    @Override
+    public Integer getMax() {
+        return 50;
+    }
+
+    @Override
+    public int defaultValue() {
+        return 0;
+    }
+
+    @Override
+    public int order() {
+        return 120;
+    }
+}
@@ -0,0 +1,31 @@
+package org.touchhome.bundle.firmata.setting;
+
+import org.touchhome.bundle.api.setting.SettingPluginSlider;
+
+public class FirmataPinEventMinIntervalSetting implements SettingPluginSlider {
+
+    @Override
+    public Integer getMin() {
+        return 0;
+    }
+
+    @Override
+    public Integer getMax() {
+        return 5000;
+    }
+
+    @Override
+    public String getHeader() {
+        return "ms";
+    }
+
+    @Override
+    public int defaultValue() {
+        return 0;
+    }
+
+    @Override
+    public int order() {
+        return 130;
+    }
+}
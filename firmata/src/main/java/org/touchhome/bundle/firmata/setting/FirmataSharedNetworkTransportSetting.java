@@ -0,0 +1,19 @@
+package org.touchhome.bundle.firmata.setting;
+
+import org.touchhome.bundle.api.setting.SettingPluginBoolean;
+
+/**
+ * Use NIO transport with shared selector thread for network devices. Applied on communicator restart.
+ */
+public class FirmataSharedNetworkTransportSetting implements SettingPluginBoolean {
+
+    @Override
+    public int order() {
+        return 140;
+    }
+
+    @Override
+    public boolean isAdvanced() {
+        return true;
+    }
+}
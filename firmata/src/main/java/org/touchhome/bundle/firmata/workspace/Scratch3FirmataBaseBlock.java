@@ -4,11 +4,13 @@ import com.pivovarit.function.ThrowingBiConsumer;
 import com.pivovarit.function.ThrowingBiFunction;
 import com.pivovarit.function.ThrowingConsumer;
 import com.pivovarit.function.ThrowingFunction;
+import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
 import lombok.extern.log4j.Log4j2;
 import org.firmata4j.Pin;
 import org.touchhome.bundle.api.BundleEntryPoint;
 import org.touchhome.bundle.api.EntityContext;
+import org.touchhome.bundle.api.entity.BaseEntity;
 import org.touchhome.bundle.api.model.Status;
 import org.touchhome.bundle.api.workspace.BroadcastLock;
 import org.touchhome.bundle.api.workspace.BroadcastLockManager;
@@ -17,8 +19,14 @@ import org.touchhome.bundle.api.workspace.scratch.MenuBlock;
 import org.touchhome.bundle.api.workspace.scratch.Scratch3Block;
 import org.touchhome.bundle.api.workspace.scratch.Scratch3ExtensionBlocks;
 import org.touchhome.bundle.firmata.model.FirmataBaseEntity;
+import org.touchhome.bundle.firmata.provider.IODeviceWrapper;
 
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 @Log4j2
 public abstract class Scratch3FirmataBaseBlock extends Scratch3ExtensionBlocks {
@@ -32,6 +40,10 @@ public abstract class Scratch3FirmataBaseBlock extends Scratch3ExtensionBlocks {
     final MenuBlock.ServerMenuBlock firmataIdMenu;
     final BroadcastLockManager broadcastLockManager;
 
+    // workspace block id -> resolved firmata entity/device/pin
+    private final Map<String, BlockHandle> blockHandles = new ConcurrentHashMap<>();
+    private final Set<String> listenedEntities = ConcurrentHashMap.newKeySet();
+
     public Scratch3FirmataBaseBlock(String color, EntityContext entityContext, BundleEntryPoint bundleEntryPoint,
                                     BroadcastLockManager broadcastLockManager, String idSuffix) {
         super(color, entityContext, bundleEntryPoint, idSuffix);
@@ -69,11 +81,9 @@ public abstract class Scratch3FirmataBaseBlock extends Scratch3ExtensionBlocks {
 
     @SneakyThrows
     <T> T execute(WorkspaceBlock workspaceBlock, boolean waitDeviceForReady, ThrowingFunction<FirmataBaseEntity, T, Exception> consumer) {
-        String firmataId = workspaceBlock.getMenuValue(FIRMATA, this.firmataIdMenu);
-        FirmataBaseEntity entity = entityContext.getEntity(firmataId);
-
-        if (entity != null && entity.getJoined() == Status.ONLINE) {
-            return consumer.apply(entity);
+        BlockHandle handle = resolve(workspaceBlock, null);
+        if (handle != null && handle.entity.getJoined() == Status.ONLINE) {
+            return consumer.apply(handle.entity);
         }
         return null;
     }
@@ -97,29 +107,78 @@ public abstract class Scratch3FirmataBaseBlock extends Scratch3ExtensionBlocks {
     <T> T execute(WorkspaceBlock workspaceBlock, boolean waitDeviceForReady, MenuBlock.ServerMenuBlock pinMenuBlock, ThrowingBiFunction<FirmataBaseEntity, Pin, T, Exception> consumer) {
         Integer pinNum = pinMenuBlock == null ? null : this.getPin(workspaceBlock, pinMenuBlock);
         if (pinMenuBlock == null || pinNum != null) {
-            String deviceId = workspaceBlock.getMenuValue(FIRMATA, this.firmataIdMenu);
-            FirmataBaseEntity entity = entityContext.getEntity(deviceId);
-            if (entity == null || entity.getDevice() == null) {
+            BlockHandle handle = resolve(workspaceBlock, pinNum);
+            if (handle == null || handle.device == null) {
                 return null;
             }
 
-            if (waitDeviceForReady && entity.getJoined() != Status.ONLINE) {
+            if (waitDeviceForReady && handle.entity.getJoined() != Status.ONLINE) {
+                FirmataBaseEntity entity = handle.entity;
                 BroadcastLock<Object> readyLock = broadcastLockManager.getOrCreateLock(workspaceBlock, "firmata_ready_" + entity.getTarget());
                 if (readyLock.await(workspaceBlock, 60, TimeUnit.SECONDS)) {
                     // fetch updated entity
-                    entity = entityContext.getEntity(deviceId);
-                    if (entity.getJoined() == Status.ONLINE) {
-                        return consumer.apply(entity, pinNum == null ? null : entity.getDevice().getIoDevice().getPin(pinNum));
+                    blockHandles.remove(workspaceBlock.getId());
+                    handle = resolve(workspaceBlock, pinNum);
+                    if (handle != null && handle.device != null && handle.entity.getJoined() == Status.ONLINE) {
+                        return consumer.apply(handle.entity, handle.pin);
                     } else {
-                        log.error("Unable to execute step for firmata entity: <{}>. Waited for ready status but got: <{}>", entity.getTitle(), entity.getStatus());
+                        log.error("Unable to execute step for firmata entity: <{}>. Waited for ready status but got: <{}>", entity.getTitle(),
+                                handle == null ? null : handle.entity.getStatus());
                     }
                 }
             } else {
-                if (entity.getJoined() == Status.ONLINE) {
-                    return consumer.apply(entity, pinNum == null ? null : entity.getDevice().getIoDevice().getPin(pinNum));
+                if (handle.entity.getJoined() == Status.ONLINE) {
+                    return consumer.apply(handle.entity, handle.pin);
                 }
             }
         }
         return null;
     }
+
+    /**
+     * Resolve selected firmata entity, device and pin once per workspace block. Cached handle dropped when
+     * entity updated/removed, or when block menus point to other device/pin.
+     */
+    private BlockHandle resolve(WorkspaceBlock workspaceBlock, Integer pinNum) {
+        String deviceId = workspaceBlock.getMenuValue(FIRMATA, this.firmataIdMenu);
+        BlockHandle handle = blockHandles.get(workspaceBlock.getId());
+        if (handle != null && handle.isValid(deviceId, pinNum)) {
+            return handle;
+        }
+        FirmataBaseEntity entity = entityContext.getEntity(deviceId);
+        if (entity == null) {
+            blockHandles.remove(workspaceBlock.getId());
+            return null;
+        }
+        listenEntityChanges(entity.getEntityID());
+        IODeviceWrapper device = entity.getDevice();
+        Pin pin = pinNum == null || device == null ? null : device.getIoDevice().getPin(pinNum);
+        handle = new BlockHandle(deviceId, pinNum, entity, device, pin);
+        blockHandles.put(workspaceBlock.getId(), handle);
+        return handle;
+    }
+
+    private void listenEntityChanges(String entityID) {
+        if (listenedEntities.add(entityID)) {
+            String key = "firmata-block-cache-" + getClass().getSimpleName() + "-" + entityID;
+            Consumer<BaseEntity> invalidate = entity ->
+                    blockHandles.values().removeIf(handle -> handle.entity.getEntityID().equals(entityID));
+            entityContext.event().addEntityUpdateListener(entityID, key, invalidate);
+            entityContext.event().addEntityRemovedListener(entityID, key, invalidate);
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static class BlockHandle {
+        private final String deviceId;
+        private final Integer pinNum;
+        private final FirmataBaseEntity entity;
+        private final IODeviceWrapper device;
+        private final Pin pin;
+
+        boolean isValid(String deviceId, Integer pinNum) {
+            // communicator creates new device on restart
+            return this.deviceId.equals(deviceId) && Objects.equals(this.pinNum, pinNum) && entity.getDevice() == device;
+        }
+    }
 }
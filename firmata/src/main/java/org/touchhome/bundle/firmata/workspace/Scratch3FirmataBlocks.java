@@ -3,6 +3,7 @@ package org.touchhome.bundle.firmata.workspace;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.extern.log4j.Log4j2;
+import org.firmata4j.IODevice;
 import org.firmata4j.Pin;
 import org.firmata4j.firmata.FirmataMessageFactory;
 import org.springframework.stereotype.Component;
@@ -10,6 +11,7 @@ import org.touchhome.bundle.api.EntityContext;
 import org.touchhome.bundle.api.measure.CompareType;
 import org.touchhome.bundle.api.measure.OnOffType;
 import org.touchhome.bundle.api.model.Status;
+import org.touchhome.bundle.api.workspace.scratch.ArgumentType;
 import org.touchhome.bundle.api.workspace.scratch.BlockType;
 import org.touchhome.bundle.api.workspace.scratch.MenuBlock;
 import org.touchhome.bundle.api.workspace.scratch.Scratch3Block;
@@ -18,8 +20,10 @@ import org.touchhome.bundle.api.workspace.BroadcastLock;
 import org.touchhome.bundle.api.workspace.BroadcastLockManager;
 import org.touchhome.bundle.firmata.FirmataBundleEntryPoint;
 import org.touchhome.bundle.firmata.model.FirmataBaseEntity;
+import org.touchhome.bundle.firmata.provider.FirmataDeviceCommunicator;
 import org.touchhome.bundle.firmata.provider.command.FirmataCommand;
 import org.touchhome.bundle.firmata.provider.command.FirmataGetTimeValueCommand;
+import org.touchhome.bundle.firmata.provider.util.AnalogCaptureBuffer;
 
 import java.util.function.Function;
 
@@ -35,6 +39,7 @@ public class Scratch3FirmataBlocks extends Scratch3FirmataBaseBlock {
     private final MenuBlock.StaticMenuBlock<OnOffType> onOffMenu;
     private final MenuBlock.StaticMenuBlock<CompareType> opMenu;
     private final MenuBlock.StaticMenuBlock<PinMode> pinModeMenu;
+    private final MenuBlock.StaticMenuBlock<CaptureStat> captureStatMenu;
 
     private final MenuBlock.ServerMenuBlock pinMenuDigital;
     private final MenuBlock.ServerMenuBlock pinMenuPwm;
@@ -46,6 +51,7 @@ public class Scratch3FirmataBlocks extends Scratch3FirmataBaseBlock {
     private final Scratch3Block pwmWrite;
     private final Scratch3Block invertPin;
     private final Scratch3Block digitalWrite;
+    private final Scratch3Block digitalWritePins;
     private final Scratch3Block getTime;
     private final Scratch3Block whenDeviceReady;
     private final Scratch3Block whenPinOpValue;
@@ -54,7 +60,11 @@ public class Scratch3FirmataBlocks extends Scratch3FirmataBaseBlock {
     private final Scratch3Block setPinMode;
     private final Scratch3Block setSamplingInterval;
     private final Scratch3Block setServoConfig;
+    private final Scratch3Block setPinDeadband;
     private final Scratch3Block delay;
+    private final Scratch3Block analogCapture;
+    private final Scratch3Block analogCaptureStat;
+    private final Scratch3Block analogCapturePercentile;
 
     public Scratch3FirmataBlocks(EntityContext entityContext, FirmataBundleEntryPoint firmataBundleEntryPoint,
                                  BroadcastLockManager broadcastLockManager,
@@ -72,6 +82,7 @@ public class Scratch3FirmataBlocks extends Scratch3FirmataBaseBlock {
         this.onOffMenu = MenuBlock.ofStatic("onOffMenu", OnOffType.class, OnOffType.OFF);
         this.opMenu = MenuBlock.ofStatic("opMenu", CompareType.class, CompareType.GREATER);
         this.pinModeMenu = MenuBlock.ofStatic("pinModeMenu", PinMode.class, PinMode.PULL_UP);
+        this.captureStatMenu = MenuBlock.ofStatic("captureStatMenu", CaptureStat.class, CaptureStat.MEAN);
 
         // Blocks
         this.pinRead = ofPin(Scratch3Block.ofEvaluate(5, "pinRead", BlockType.reporter,
@@ -81,6 +92,11 @@ public class Scratch3FirmataBlocks extends Scratch3FirmataBaseBlock {
                 "Set(D) Pin [PIN] [ON_OFF] to [FIRMATA]", this::digitalWriteHandler), this.pinMenuDigital);
         this.digitalWrite.addArgument("ON_OFF", this.onOffMenu);
 
+        this.digitalWritePins = of(Scratch3Block.ofHandler(12, "digital_write_pins", BlockType.command,
+                "Set(D) Pins [PINS] [ON_OFF] to [FIRMATA]", this::digitalWritePinsHandler));
+        this.digitalWritePins.addArgument("PINS", ArgumentType.string);
+        this.digitalWritePins.addArgument("ON_OFF", this.onOffMenu);
+
         this.analogWrite = ofPin(Scratch3Block.ofHandler(15, "analogWrite", BlockType.command,
                 "Set(A) Pin [PIN] [VALUE] to [FIRMATA]", this::pwmWriteHandler), this.pinMenuAnalog);
         this.analogWrite.addArgument(VALUE, 50);
@@ -119,6 +135,12 @@ public class Scratch3FirmataBlocks extends Scratch3FirmataBaseBlock {
         this.setServoConfig.addArgument("MIN", 0);
         this.setServoConfig.addArgument("MAX", 100);
 
+        this.setPinDeadband = ofPin(Scratch3Block.ofHandler(72, "set_pin_deadband", BlockType.command,
+                "Pin [PIN] report changes over [VALUE] hysteresis [HYSTERESIS] of [FIRMATA]", this::setPinDeadbandHandler),
+                this.pinMenuAnalog, "#939844");
+        this.setPinDeadband.addArgument(VALUE, 2);
+        this.setPinDeadband.addArgument("HYSTERESIS", 1);
+
         this.delay = of(Scratch3Block.ofHandler(70, "delay", BlockType.command,
                 "Delay [VALUE] of [FIRMATA]", this::delayHandler), "#939844");
         this.delay.addArgument(VALUE, 3);
@@ -126,6 +148,20 @@ public class Scratch3FirmataBlocks extends Scratch3FirmataBaseBlock {
         this.getTime = of(Scratch3Block.ofEvaluate(80, "time", BlockType.reporter,
                 "time of [FIRMATA]", this::getTimeEvaluate), "#939844");
 
+        this.analogCapture = ofPin(Scratch3Block.ofHandler(100, "analog_capture", BlockType.command,
+                "Capture Pin [PIN] last [SIZE] samples every [INTERVAL]ms of [FIRMATA]", this::analogCaptureHandler),
+                this.pinMenuAnalog, "#939844");
+        this.analogCapture.addArgument("SIZE", 1000);
+        this.analogCapture.addArgument("INTERVAL", 19);
+
+        this.analogCaptureStat = ofPin(Scratch3Block.ofEvaluate(105, "analog_capture_stat", BlockType.reporter,
+                "[STAT] of Pin [PIN] capture of [FIRMATA]", this::analogCaptureStatEvaluate), this.pinMenuAnalog);
+        this.analogCaptureStat.addArgument("STAT", this.captureStatMenu);
+
+        this.analogCapturePercentile = ofPin(Scratch3Block.ofEvaluate(110, "analog_capture_percentile", BlockType.reporter,
+                "[VALUE] percentile of Pin [PIN] capture of [FIRMATA]", this::analogCapturePercentileEvaluate), this.pinMenuAnalog);
+        this.analogCapturePercentile.addArgument(VALUE, 90);
+
         this.getProtocol = of(Scratch3Block.ofEvaluate(90, "protocol", BlockType.reporter,
                 "protocol of [FIRMATA]", this::getProtocolEvaluate), "#939844");
 
@@ -165,6 +201,13 @@ public class Scratch3FirmataBlocks extends Scratch3FirmataBaseBlock {
         });
     }
 
+    private void setPinDeadbandHandler(WorkspaceBlock workspaceBlock) {
+        int deadband = workspaceBlock.getInputInteger(VALUE);
+        int hysteresis = workspaceBlock.getInputInteger("HYSTERESIS");
+        executeNoResponse(workspaceBlock, false, this.pinMenuAnalog, (entity, pin) ->
+                entity.getFirmataDeviceCommunicator().getPinEventFilter().setPinDeadband(pin.getIndex(), deadband, hysteresis));
+    }
+
     private void setSamplingIntervalHandler(WorkspaceBlock workspaceBlock) {
         int interval = workspaceBlock.getInputInteger("INTERVAL");
         execute(workspaceBlock, false, entity -> {
@@ -172,6 +215,40 @@ public class Scratch3FirmataBlocks extends Scratch3FirmataBaseBlock {
         });
     }
 
+    /**
+     * Size 0 stops capture
+     */
+    private void analogCaptureHandler(WorkspaceBlock workspaceBlock) {
+        int size = workspaceBlock.getInputInteger("SIZE");
+        int interval = workspaceBlock.getInputInteger("INTERVAL");
+        executeNoResponse(workspaceBlock, false, this.pinMenuAnalog, (entity, pin) -> {
+            FirmataDeviceCommunicator communicator = entity.getFirmataDeviceCommunicator();
+            if (size <= 0) {
+                communicator.stopAnalogCapture(pin.getIndex());
+            } else {
+                entity.getDevice().sendMessage(FirmataMessageFactory.setSamplingInterval(interval));
+                pin.setMode(Pin.Mode.ANALOG);
+                communicator.startAnalogCapture(pin.getIndex(), size, interval);
+            }
+        });
+    }
+
+    private Number analogCaptureStatEvaluate(WorkspaceBlock workspaceBlock) {
+        CaptureStat stat = workspaceBlock.getMenuValue("STAT", this.captureStatMenu);
+        return execute(workspaceBlock, false, this.pinMenuAnalog, (entity, pin) -> {
+            AnalogCaptureBuffer capture = entity.getFirmataDeviceCommunicator().getAnalogCapture(pin.getIndex());
+            return capture == null ? null : stat.getter.apply(capture);
+        });
+    }
+
+    private Integer analogCapturePercentileEvaluate(WorkspaceBlock workspaceBlock) {
+        int percent = workspaceBlock.getInputInteger(VALUE);
+        return execute(workspaceBlock, false, this.pinMenuAnalog, (entity, pin) -> {
+            AnalogCaptureBuffer capture = entity.getFirmataDeviceCommunicator().getAnalogCapture(pin.getIndex());
+            return capture == null ? null : capture.getPercentile(percent);
+        });
+    }
+
     private void setPinModeHandler(WorkspaceBlock workspaceBlock) {
         PinMode mode = workspaceBlock.getMenuValue("MODE", this.pinModeMenu);
         executeNoResponse(workspaceBlock, false, this.pinMenuAll, (entity, pin) -> pin.setMode(mode.value));
@@ -223,6 +300,26 @@ public class Scratch3FirmataBlocks extends Scratch3FirmataBaseBlock {
                 workspaceBlock.getMenuValue("ON_OFF", this.onOffMenu).longValue());
     }
 
+    /**
+     * Set comma separated pins in one batch, so pins on same port are updated by one message
+     */
+    private void digitalWritePinsHandler(WorkspaceBlock workspaceBlock) {
+        String pins = workspaceBlock.getInputString("PINS");
+        long value = workspaceBlock.getMenuValue("ON_OFF", this.onOffMenu).longValue();
+        execute(workspaceBlock, false, entity -> {
+            IODevice ioDevice = entity.getDevice().getIoDevice();
+            entity.getDevice().batch(() -> {
+                for (String pinNum : pins.split(",")) {
+                    if (!pinNum.trim().isEmpty()) {
+                        Pin pin = ioDevice.getPin(Integer.parseInt(pinNum.trim()));
+                        pin.setMode(Pin.Mode.OUTPUT);
+                        pin.setValue(value);
+                    }
+                }
+            });
+        });
+    }
+
     private void pwmWriteHandler(WorkspaceBlock workspaceBlock) {
         updatePinValue(workspaceBlock, Pin.Mode.PWM, pin -> workspaceBlock.getInputInteger(VALUE).longValue());
     }
@@ -239,6 +336,15 @@ public class Scratch3FirmataBlocks extends Scratch3FirmataBaseBlock {
         });
     }
 
+    @AllArgsConstructor
+    public enum CaptureStat {
+        MIN(AnalogCaptureBuffer::getMin),
+        MAX(AnalogCaptureBuffer::getMax),
+        MEAN(AnalogCaptureBuffer::getMean),
+        RMS(AnalogCaptureBuffer::getRms);
+        private final Function<AnalogCaptureBuffer, Number> getter;
+    }
+
     @AllArgsConstructor
     public enum PinMode {
         ENCODER(Pin.Mode.ENCODER),
@@ -11,9 +11,12 @@ import org.touchhome.bundle.api.workspace.scratch.BlockType;
 import org.touchhome.bundle.api.workspace.scratch.MenuBlock;
 import org.touchhome.bundle.api.workspace.scratch.Scratch3Block;
 import org.touchhome.bundle.firmata.FirmataBundleEntryPoint;
-import org.touchhome.bundle.firmata.provider.util.OneWireDevice;
+import org.touchhome.bundle.firmata.provider.OneWireTemperatureSampler;
 
-import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 @Log4j2
 @Getter
@@ -25,7 +28,14 @@ public class Scratch3FirmataOneWireBlocks extends Scratch3FirmataBaseBlock {
     private final MenuBlock.ServerMenuBlock menuTemperatureAddress;
 
     private final Scratch3Block ds18b20Value;
-    boolean sendConfig = false;
+
+    // one sampler per board 1-wire pin
+    private final Map<String, OneWireTemperatureSampler> samplers = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService samplerScheduler = Executors.newScheduledThreadPool(2, r -> {
+        Thread thread = new Thread(r, "firmata-ds18b20-sampler");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     public Scratch3FirmataOneWireBlocks(EntityContext entityContext,
                                         FirmataBundleEntryPoint firmataBundleEntryPoint,
@@ -33,7 +43,7 @@ public class Scratch3FirmataOneWireBlocks extends Scratch3FirmataBaseBlock {
         super("#83A044", entityContext, firmataBundleEntryPoint, broadcastLockManager, "onewire");
 
         this.pinMenu1Wire = MenuBlock.ofServer(PIN, REST_PIN + Pin.Mode.ONEWIRE).setDependency(firmataIdMenu);
-        this.menuTemperatureAddress = MenuBlock.ofServer("pinMenu1WireAddress", ONE_REST + ONE_WIRE.DS18B20.TEMPERATURE_FAMILY).setDependency(firmataIdMenu, this.pinMenu1Wire);
+        this.menuTemperatureAddress = MenuBlock.ofServer("pinMenu1WireAddress", ONE_REST + OneWireTemperatureSampler.TEMPERATURE_FAMILY).setDependency(firmataIdMenu, this.pinMenu1Wire);
 
         this.ds18b20Value = ofPin(Scratch3Block.ofEvaluate(10, "DS18B20", BlockType.reporter,
                 "DS18B20(1-Wire) on [PIN] address [ADDRESS] of [FIRMATA]", this::getDS18B20Value), this.pinMenu1Wire);
@@ -47,30 +57,12 @@ public class Scratch3FirmataOneWireBlocks extends Scratch3FirmataBaseBlock {
         if (longAddress == null) {
             return -1;
         }
-        ByteBuffer address = OneWireDevice.toByteArray(longAddress);
-        return execute(workspaceBlock, false, this.pinMenu1Wire, (entity, pin) -> {
-            entity.getDevice().getIoOneWire().sendOneWireConfig(pin.getIndex(), true);
-
-            // start conversion, with parasite power on at the end
-            ByteBuffer payload = ByteBuffer.allocate(1).put(ONE_WIRE.DS18B20.CONVERT_TEMPERATURE_COMMAND);
-            entity.getDevice().getIoOneWire().sendOneWireWrite(pin.getIndex(), address, payload, null, true);
-
-            // maybe 750ms is enough, maybe not
-            entity.getDevice().getIoOneWire().sendOneWireDelay(pin.getIndex(), 1);
-
-            // Read Scratchpad
-            payload = ByteBuffer.allocate(1).put(ONE_WIRE.DS18B20.READ_SCRATCHPAD_COMMAND);
-            byte[] data = entity.getDevice().getIoOneWire().sendOneWireWriteAndRead(pin.getIndex(), address, payload, ONE_WIRE.DS18B20.READ_COUNT, null, true);
-            return (float) (data == null ? -1 : ((data[1] & 0xFF) << 8) | data[0] & 0xFF) / 16;
+        Float value = execute(workspaceBlock, false, this.pinMenu1Wire, (entity, pin) -> {
+            OneWireTemperatureSampler sampler = samplers.computeIfAbsent(entity.getEntityID() + "_" + pin.getIndex(),
+                    key -> new OneWireTemperatureSampler(pin.getIndex(), samplerScheduler));
+            OneWireTemperatureSampler.Sample sample = sampler.getSample(entity, longAddress);
+            return sample == null ? -1F : sample.getTemperature();
         });
-    }
-
-    private static class ONE_WIRE {
-        private static class DS18B20 {
-            private static final byte TEMPERATURE_FAMILY = 0x28;
-            private static final byte CONVERT_TEMPERATURE_COMMAND = 0x44;
-            private static final byte READ_SCRATCHPAD_COMMAND = (byte) 0xBE;
-            private static final byte READ_COUNT = 2;
-        }
+        return value == null ? -1 : value;
     }
 }
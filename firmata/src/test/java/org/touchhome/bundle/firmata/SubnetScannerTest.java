@@ -0,0 +1,53 @@
+package org.touchhome.bundle.firmata;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SubnetScannerTest {
+
+    @Test
+    public void testSubnetHosts() throws Exception {
+        Inet4Address address = (Inet4Address) InetAddress.getByName("192.168.5.77");
+        List<InetAddress> hosts = SubnetScanner.getSubnetHosts(address, 24, 4094);
+        assertEquals(254, hosts.size());
+        assertEquals("192.168.5.1", hosts.get(0).getHostAddress());
+        assertEquals("192.168.5.254", hosts.get(253).getHostAddress());
+
+        hosts = SubnetScanner.getSubnetHosts(address, 22, 4094);
+        assertEquals(1022, hosts.size());
+        assertEquals("192.168.4.1", hosts.get(0).getHostAddress());
+        assertEquals("192.168.7.254", hosts.get(1021).getHostAddress());
+
+        // /16 narrowed to network around own address
+        hosts = SubnetScanner.getSubnetHosts(address, 16, 1000);
+        assertEquals(510, hosts.size());
+        assertEquals("192.168.4.1", hosts.get(0).getHostAddress());
+    }
+
+    @Test
+    public void testScan() throws Exception {
+        try (ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"))) {
+            List<String> found = new ArrayList<>();
+            List<Integer> progress = new ArrayList<>();
+            List<InetAddress> addresses = Arrays.asList(InetAddress.getByName("127.0.0.1"), InetAddress.getByName("127.0.0.2"));
+
+            long startedAt = System.currentTimeMillis();
+            int count = new SubnetScanner(1000, 16).scan(addresses, serverSocket.getLocalPort(),
+                    System.currentTimeMillis() + 5000, (ip, port) -> found.add(ip), progress::add);
+
+            assertEquals(1, count);
+            assertEquals(Arrays.asList("127.0.0.1"), found);
+            assertEquals(2, (int) progress.get(progress.size() - 1));
+            assertTrue(System.currentTimeMillis() - startedAt < 5000);
+        }
+    }
+}
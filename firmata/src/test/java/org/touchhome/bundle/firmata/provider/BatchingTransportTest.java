@@ -0,0 +1,114 @@
+package org.touchhome.bundle.firmata.provider;
+
+import org.firmata4j.Parser;
+import org.firmata4j.transport.TransportInterface;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BatchingTransportTest {
+
+    private final RecordingTransport delegate = new RecordingTransport();
+    private final BatchingTransport transport = new BatchingTransport(delegate);
+
+    @Test
+    public void testPinWritesFoldedIntoKnownPort() throws IOException {
+        transport.hold();
+        // port 1 = pins 8..15, pin 15 set
+        transport.write(new byte[]{(byte) 0x91, 0x00, 0x01});
+        transport.write(new byte[]{(byte) 0xF5, 9, 1});
+        transport.write(new byte[]{(byte) 0xF5, 15, 0});
+        transport.write(new byte[]{(byte) 0xF5, 8, 1});
+        transport.release();
+
+        assertEquals(1, delegate.writes.size());
+        assertArrayEquals(new byte[]{(byte) 0x91, 0x03, 0x00}, delegate.writes.get(0));
+    }
+
+    @Test
+    public void testPinWritesOfUnknownPortCollapsedPerPin() throws IOException {
+        transport.hold();
+        transport.write(new byte[]{(byte) 0xF5, 2, 1});
+        transport.write(new byte[]{(byte) 0xF5, 3, 1});
+        transport.write(new byte[]{(byte) 0xF5, 2, 0});
+        transport.release();
+
+        // other pins of port 0 are unknown, so no port message is built
+        assertArrayEquals(new byte[]{(byte) 0xF5, 2, 0, (byte) 0xF5, 3, 1}, delegate.writes.get(0));
+    }
+
+    @Test
+    public void testBarrierKeepsOrder() throws IOException {
+        transport.hold();
+        transport.write(new byte[]{(byte) 0x90, 0x01, 0x00});
+        // analog write between digital writes
+        transport.write(new byte[]{(byte) 0xE3, 0x10, 0x00});
+        transport.write(new byte[]{(byte) 0xF5, 1, 1});
+        transport.write(new byte[]{(byte) 0xF5, 0, 0});
+        transport.release();
+
+        assertArrayEquals(new byte[]{
+                (byte) 0x90, 0x01, 0x00,
+                (byte) 0xE3, 0x10, 0x00,
+                (byte) 0x90, 0x02, 0x00}, delegate.writes.get(0));
+    }
+
+    @Test
+    public void testPinModeForgetsPinState() throws IOException {
+        transport.hold();
+        transport.write(new byte[]{(byte) 0x90, 0x7F, 0x01});
+        transport.write(new byte[]{(byte) 0xF4, 4, 1});
+        transport.write(new byte[]{(byte) 0xF5, 5, 0});
+        transport.release();
+
+        assertArrayEquals(new byte[]{
+                (byte) 0x90, 0x7F, 0x01,
+                (byte) 0xF4, 4, 1,
+                (byte) 0xF5, 5, 0}, delegate.writes.get(0));
+    }
+
+    @Test
+    public void testHoldAndScheduledFlush() throws Exception {
+        transport.hold();
+        transport.write(new byte[]{(byte) 0xF9});
+        Thread.sleep(50);
+        assertTrue(delegate.writes.isEmpty());
+        transport.release();
+        assertEquals(1, delegate.writes.size());
+
+        transport.write(new byte[]{(byte) 0xF9});
+        long waitUntil = System.currentTimeMillis() + 1000;
+        while (delegate.writes.size() < 2 && System.currentTimeMillis() < waitUntil) {
+            Thread.sleep(5);
+        }
+        assertEquals(2, delegate.writes.size());
+    }
+
+    private static class RecordingTransport implements TransportInterface {
+        private final List<byte[]> writes = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void stop() {
+        }
+
+        @Override
+        public synchronized void write(byte[] bytes) {
+            writes.add(bytes);
+        }
+
+        @Override
+        public void setParser(Parser parser) {
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package org.touchhome.bundle.firmata.provider;
+
+import org.firmata4j.Parser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Runs transport against loopback echo server which plays firmata board.
+ */
+public class NioNetworkTransportTest {
+
+    private final BlockingQueue<Socket> accepted = new LinkedBlockingQueue<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private ServerSocket serverSocket;
+    private NioNetworkTransport transport;
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        if (transport != null) {
+            transport.stop();
+        }
+        serverSocket.close();
+        for (Socket socket : accepted) {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void testWriteReadAndReconnect() throws Exception {
+        startEchoServer();
+        RecordingParser parser = new RecordingParser();
+        transport = new NioNetworkTransport("127.0.0.1", serverSocket.getLocalPort());
+        transport.setParser(parser);
+        transport.start();
+
+        transport.write(new byte[]{1, 2, 3});
+        assertArrayEquals(new byte[]{1, 2, 3}, parser.read(3));
+
+        // board drops connection, transport reconnects by itself
+        accepted.take().close();
+        writeWhenConnected(new byte[]{4, 5});
+        assertArrayEquals(new byte[]{4, 5}, parser.read(2));
+        assertEquals(2, connections.get());
+    }
+
+    @Test
+    public void testStopDuringReconnect() throws Exception {
+        startEchoServer();
+        transport = new NioNetworkTransport("127.0.0.1", serverSocket.getLocalPort());
+        transport.setParser(new RecordingParser());
+        transport.start();
+
+        accepted.take().close();
+        // reconnect is scheduled after MIN_RECONNECT_DELAY
+        Thread.sleep(100);
+        transport.stop();
+        Thread.sleep(TimeUnit.SECONDS.toMillis(2));
+        assertEquals(1, connections.get());
+    }
+
+    private void startEchoServer() throws IOException {
+        serverSocket = new ServerSocket(0, 10, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(() -> {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    connections.incrementAndGet();
+                    accepted.add(socket);
+                    Thread echo = new Thread(() -> echo(socket), "firmata-test-echo");
+                    echo.setDaemon(true);
+                    echo.start();
+                } catch (IOException ignore) {
+                    // server closed
+                }
+            }
+        }, "firmata-test-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    private static void echo(Socket socket) {
+        byte[] buffer = new byte[256];
+        try (InputStream inputStream = socket.getInputStream()) {
+            int read;
+            while ((read = inputStream.read(buffer)) >= 0) {
+                socket.getOutputStream().write(buffer, 0, read);
+            }
+        } catch (IOException ignore) {
+            // socket closed
+        }
+    }
+
+    private void writeWhenConnected(byte[] bytes) throws InterruptedException {
+        long waitUntil = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+        while (true) {
+            try {
+                transport.write(bytes);
+                return;
+            } catch (IOException ex) {
+                if (System.currentTimeMillis() > waitUntil) {
+                    throw new AssertionError("Transport not reconnected", ex);
+                }
+                Thread.sleep(50);
+            }
+        }
+    }
+
+    private static class RecordingParser implements Parser {
+        private final BlockingQueue<byte[]> received = new LinkedBlockingQueue<>();
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void stop() {
+        }
+
+        @Override
+        public void parse(byte[] bytes) {
+            received.add(bytes);
+        }
+
+        byte[] read(int length) throws InterruptedException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            while (bytes.size() < length) {
+                byte[] chunk = received.poll(5, TimeUnit.SECONDS);
+                assertNotNull(chunk, "Nothing received");
+                bytes.write(chunk, 0, chunk.length);
+            }
+            return bytes.toByteArray();
+        }
+    }
+}
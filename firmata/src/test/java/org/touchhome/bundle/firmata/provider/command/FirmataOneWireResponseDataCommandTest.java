@@ -0,0 +1,34 @@
+package org.touchhome.bundle.firmata.provider.command;
+
+import org.junit.jupiter.api.Test;
+import org.touchhome.bundle.firmata.provider.util.OneWireUtils;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+public class FirmataOneWireResponseDataCommandTest {
+
+    @Test
+    public void testReadReplyDecodedInPlace() {
+        FirmataOneWireResponseDataCommand command = new FirmataOneWireResponseDataCommand();
+        int correlationId = command.nextCorrelationId();
+        byte[] data = new byte[]{0x50, 0x05, 0x4B, 0x46, 0x7F, (byte) 0xFF, 0x0C, 0x10, 0x1C};
+
+        byte[] decoded = new byte[2 + data.length];
+        decoded[0] = (byte) correlationId;
+        decoded[1] = (byte) (correlationId >> 8);
+        System.arraycopy(data, 0, decoded, 2, data.length);
+        // command id and pin precede packed data, as in sysex message
+        byte[] message = new byte[3 + OneWireUtils.packed7BitLength(decoded.length)];
+        message[1] = OneWireUtils.ONEWIRE_READ_REPLY;
+        message[2] = 4;
+        OneWireUtils.to7Bit(decoded, 0, decoded.length, message, 3);
+        ByteBuffer payload = ByteBuffer.wrap(message);
+        payload.get();
+
+        command.handle(null, null, (byte) 0, payload);
+
+        assertArrayEquals(data, command.waitForValue(correlationId, (Runnable) null));
+    }
+}
@@ -0,0 +1,70 @@
+package org.touchhome.bundle.firmata.provider.command;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class RequestCorrelatorTest {
+
+    @Test
+    public void testPipelinedRequests() throws Exception {
+        RequestCorrelator<Integer, byte[]> correlator = new RequestCorrelator<>();
+        ExecutorService replier = Executors.newSingleThreadExecutor();
+        try {
+            List<Integer> ids = new ArrayList<>();
+            List<CompletableFuture<byte[]>> results = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                int id = correlator.nextId();
+                ids.add(id);
+                results.add(correlator.send(id, null));
+            }
+            assertEquals(32, correlator.getPendingRequests());
+            // board answers in reverse order of requests
+            List<Integer> replyOrder = new ArrayList<>(ids);
+            Collections.reverse(replyOrder);
+            replier.execute(() -> {
+                for (int id : replyOrder) {
+                    correlator.complete(id, new byte[]{(byte) id});
+                }
+            });
+            for (int i = 0; i < results.size(); i++) {
+                assertArrayEquals(new byte[]{(byte) (int) ids.get(i)}, correlator.await(ids.get(i), results.get(i), 5000));
+            }
+            assertEquals(0, correlator.getPendingRequests());
+        } finally {
+            replier.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testIdsWrapAt16Bit() {
+        RequestCorrelator<Integer, byte[]> correlator = new RequestCorrelator<>();
+        int first = correlator.nextId();
+        for (int i = 0; i < 0xFFFF; i++) {
+            correlator.nextId();
+        }
+        assertEquals(first, correlator.nextId());
+    }
+
+    @Test
+    public void testEarlyAndLateReplies() {
+        RequestCorrelator<String, Long> correlator = new RequestCorrelator<>();
+        correlator.complete("early", 1L);
+        assertEquals(1L, correlator.request("early", 10, null));
+
+        assertNull(correlator.request("late", 10, null));
+        assertEquals(0, correlator.getPendingRequests());
+        // reply of timed out request isn't taken by next request
+        correlator.complete("late", 2L);
+        assertNull(correlator.request("late", 10, null));
+    }
+}
@@ -0,0 +1,57 @@
+package org.touchhome.bundle.firmata.provider.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class AnalogCaptureBufferTest {
+
+    @Test
+    public void testWindowStatistics() {
+        AnalogCaptureBuffer buffer = new AnalogCaptureBuffer(4, 0);
+        for (int value : new int[]{10, 2, 7, 5, 3}) {
+            buffer.add(value, 0);
+        }
+        // window is 2, 7, 5, 3
+        assertEquals(4, buffer.getSize());
+        assertEquals(2, buffer.getMin());
+        assertEquals(7, buffer.getMax());
+        assertEquals(4.25, buffer.getMean(), 1e-9);
+        assertEquals(Math.sqrt((4 + 49 + 25 + 9) / 4D), buffer.getRms(), 1e-9);
+        assertEquals(3, buffer.getPercentile(50));
+        assertEquals(7, buffer.getPercentile(100));
+    }
+
+    @Test
+    public void testMatchesFullRecalculation() {
+        Random random = new Random(1);
+        AnalogCaptureBuffer buffer = new AnalogCaptureBuffer(100, 0);
+        int[] window = new int[100];
+        for (int i = 0; i < 10_000; i++) {
+            int value = random.nextInt(2048);
+            buffer.add(value, 0);
+            window[i % window.length] = value;
+            if (i >= window.length && i % 97 == 0) {
+                int[] sorted = window.clone();
+                Arrays.sort(sorted);
+                assertEquals(sorted[0], buffer.getMin());
+                assertEquals(sorted[sorted.length - 1], buffer.getMax());
+                assertEquals(Arrays.stream(sorted).average().getAsDouble(), buffer.getMean(), 1e-9);
+                assertEquals(sorted[89], buffer.getPercentile(90));
+            }
+        }
+    }
+
+    @Test
+    public void testHeldValueFilledForMissedReports() {
+        AnalogCaptureBuffer buffer = new AnalogCaptureBuffer(10, 10);
+        buffer.add(100, 0);
+        // no reports at 10, 20, 30 means value stayed 100
+        buffer.add(0, 40);
+        assertEquals(5, buffer.getSize());
+        assertEquals(80, buffer.getMean(), 1e-9);
+    }
+}
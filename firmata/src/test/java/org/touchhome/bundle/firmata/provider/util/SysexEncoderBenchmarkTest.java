@@ -0,0 +1,115 @@
+package org.touchhome.bundle.firmata.provider.util;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.firmata4j.firmata.parser.FirmataToken.END_SYSEX;
+import static org.firmata4j.firmata.parser.FirmataToken.START_SYSEX;
+
+/**
+ * Checks encoder builds same bytes as previous ByteBuffer based message building. Allocated bytes per message
+ * depend on JVM so are compared only with -DallocationBenchmark=true.
+ */
+public class SysexEncoderBenchmarkTest {
+
+    private static final int ITERATIONS = 100_000;
+
+    @Test
+    public void testPackUnpack() {
+        Random random = new Random(1);
+        for (int length = 0; length < 64; length++) {
+            byte[] data = new byte[length];
+            random.nextBytes(data);
+            byte[] packed = new byte[OneWireUtils.packed7BitLength(length) + 3];
+            int packedLength = OneWireUtils.to7Bit(data, 0, length, packed, 3);
+            assertEquals(OneWireUtils.packed7BitLength(length), packedLength);
+
+            // decode in place
+            int decodedLength = OneWireUtils.from7Bit(packed, 3, packedLength, packed, 3);
+            assertEquals(length, decodedLength);
+            byte[] decoded = new byte[length];
+            System.arraycopy(packed, 3, decoded, 0, length);
+            assertArrayEquals(data, decoded);
+        }
+    }
+
+    @Test
+    public void testSameAsLegacyMessage() {
+        byte[] address = new byte[]{0x28, (byte) 0xDB, (byte) 0xEF, 0x21, 0x05, 0x00, 0x00, 0x5D};
+        SysexEncoder encoder = new SysexEncoder();
+        byte[] message = encoder.begin((byte) 0x73).put((byte) 0x2C).put((byte) 4)
+                .raw(address, 0, address.length).raw(9, 2).raw(513, 2).raw((byte) 0xBE).pack7Bit().end();
+        assertArrayEquals(legacyOneWireMessage(address, 513), message);
+
+        message = encoder.begin((byte) 0x50).put((byte) 3).putShort((short) 258).putLong(0x0102030405060708L).end();
+        ByteBuffer legacy = ByteBuffer.allocate(14).put(START_SYSEX).put((byte) 0x50).put((byte) 3).putShort((short) 258)
+                .putLong(0x0102030405060708L).put(END_SYSEX);
+        assertArrayEquals(legacy.array(), message);
+    }
+
+    @Test
+    @Tag("benchmark")
+    @EnabledIfSystemProperty(named = "allocationBenchmark", matches = "true")
+    public void testAllocations() {
+        byte[] address = new byte[]{0x28, (byte) 0xDB, (byte) 0xEF, 0x21, 0x05, 0x00, 0x00, 0x5D};
+        SysexEncoder encoder = new SysexEncoder();
+        int checksum = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            checksum += legacyOneWireMessage(address, i & 0xFFFF).length;
+            checksum += encodeOneWireMessage(encoder, address, i & 0xFFFF).length;
+        }
+
+        long allocated = allocatedBytes();
+        for (int i = 0; i < ITERATIONS; i++) {
+            checksum += legacyOneWireMessage(address, i & 0xFFFF).length;
+        }
+        long legacyAllocated = allocatedBytes() - allocated;
+
+        allocated = allocatedBytes();
+        for (int i = 0; i < ITERATIONS; i++) {
+            checksum += encodeOneWireMessage(encoder, address, i & 0xFFFF).length;
+        }
+        long encoderAllocated = allocatedBytes() - allocated;
+
+        assertTrue(checksum > 0);
+        assertTrue(encoderAllocated / ITERATIONS < 8, "encoder allocated " + encoderAllocated / ITERATIONS + " bytes/msg");
+        assertTrue(legacyAllocated > encoderAllocated);
+    }
+
+    private static byte[] encodeOneWireMessage(SysexEncoder encoder, byte[] address, int correlationId) {
+        return encoder.begin((byte) 0x73).put((byte) 0x2C).put((byte) 4)
+                .raw(address, 0, address.length).raw(9, 2).raw(correlationId, 2).raw((byte) 0xBE).pack7Bit().end();
+    }
+
+    // message as IOOneWire built it before SysexEncoder
+    private static byte[] legacyOneWireMessage(byte[] address, int correlationId) {
+        byte[] data = ByteBuffer.allocate(1).put((byte) 0xBE).array();
+        ByteBuffer bytes = ByteBuffer.allocate(8 + 2 + 2 + data.length);
+        bytes.put(address);
+        bytes.put((byte) 9).put((byte) 0);
+        bytes.put((byte) (correlationId & 0xFF)).put((byte) ((correlationId >> 8) & 0xFF));
+        bytes.put(data);
+        byte[] packed = OneWireUtils.to7BitArray(bytes.array());
+        ByteBuffer payload = ByteBuffer.allocate(5 + packed.length);
+        payload.put(START_SYSEX).put((byte) 0x73).put((byte) 0x2C).put((byte) 4).put(packed).put(END_SYSEX);
+        return payload.array();
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        assumeTrue(threadMXBean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threadMXBean).isThreadAllocatedMemorySupported(),
+                "Thread allocation counter not supported by JVM");
+        return ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -25,8 +25,10 @@ public class ZigBeeBundleEntryPoint implements BundleEntryPoint {
     private final EntityContext entityContext;
     private final ZigBeeChannelConverterFactory zigBeeChannelConverterFactory;
     private final ZigBeeDeviceUpdateValueListener deviceUpdateListener;
+    private final ZigBeeDeviceStateStreamService deviceStateStreamService;
 
     private final ZigBeeIsAliveTracker zigBeeIsAliveTracker = new ZigBeeIsAliveTracker();
+    private final ZigBeeModelInterviewCache modelInterviewCache = new ZigBeeModelInterviewCache();
 
     private ZigBeeDiscoveryService zigBeeDiscoveryService;
     @Getter
@@ -38,6 +40,7 @@ public class ZigBeeBundleEntryPoint implements BundleEntryPoint {
         this.zigBeeDiscoveryService = new ZigBeeDiscoveryService(
                 entityContext, coordinatorHandler,
                 zigBeeIsAliveTracker,
+                modelInterviewCache,
                 zigBeeChannelConverterFactory,
                 scheduler,
                 deviceUpdateListener);
@@ -56,6 +59,7 @@ public class ZigBeeBundleEntryPoint implements BundleEntryPoint {
     @Override
     public void destroy() {
         this.coordinatorHandler.dispose();
+        this.deviceStateStreamService.destroy();
     }
 
     @Override
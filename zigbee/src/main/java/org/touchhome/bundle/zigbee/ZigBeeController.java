@@ -4,7 +4,9 @@ import com.zsmartsystems.zigbee.zcl.clusters.ZclIasZoneCluster;
 import com.zsmartsystems.zigbee.zcl.clusters.ZclOnOffCluster;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.touchhome.bundle.api.EntityContext;
 import org.touchhome.bundle.api.model.OptionModel;
 import org.touchhome.bundle.zigbee.converter.impl.ZigBeeConverterEndpoint;
@@ -12,6 +14,7 @@ import org.touchhome.bundle.zigbee.model.ZigBeeDeviceEntity;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 @Log4j2
@@ -21,6 +24,7 @@ import java.util.List;
 public class ZigBeeController {
     private final EntityContext entityContext;
     private final ZigBeeBundleEntryPoint zigbeeBundleContext;
+    private final ZigBeeDeviceStateStreamService deviceStateStreamService;
 
     @GetMapping("option/zcl/{clusterId}")
     public Collection<OptionModel> filterByClusterId(@PathVariable("clusterId") int clusterId,
@@ -91,10 +95,24 @@ public class ZigBeeController {
         return list;
     }
 
+    @GetMapping(value = "stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamDeviceStates(@RequestParam(value = "ieeeAddress", required = false) String ieeeAddress,
+                                         @RequestParam(value = "clusterId", required = false) Integer clusterId,
+                                         @RequestParam(value = "clusterName", required = false) String clusterName,
+                                         @RequestParam(value = "modelIdentifier", required = false) String modelIdentifier) {
+        return deviceStateStreamService.subscribe(ieeeAddress, clusterId, clusterName, modelIdentifier);
+    }
+
+    @GetMapping("mesh/weakestLinks")
+    public List<ZigBeeMeshTopology.MeshLink> getWeakestLinks(@RequestParam(value = "limit", defaultValue = "10") int limit) {
+        ZigBeeMeshTopology meshTopology = zigbeeBundleContext.getCoordinatorHandler().getMeshTopology();
+        return meshTopology == null ? Collections.emptyList() : meshTopology.getWeakestLinks(limit);
+    }
+
     private List<ZigBeeConverterEndpoint> getZigBeeConverterEndpointsByClusterId(ZigBeeDevice zigBeeDevice, Integer clusterId) {
         List<ZigBeeConverterEndpoint> endpoints = new ArrayList<>();
         for (ZigBeeConverterEndpoint zigBeeConverterEndpoint : zigBeeDevice.getZigBeeConverterEndpoints().keySet()) {
-            if (containsAny(zigBeeConverterEndpoint.getZigBeeConverter().clientClusters(), clusterId)) {
+            if (containsAny(zigBeeConverterEndpoint.getConverterDefinition().getClientClusters(), clusterId)) {
                 endpoints.add(zigBeeConverterEndpoint);
             }
         }
@@ -77,6 +77,7 @@ public abstract class ZigBeeCoordinatorHandler
     private Class<?> deserializerClass = DefaultDeserializer.class;
     private ZigBeeDataStore networkDataStore;
     private TransportConfig transportConfig;
+    private ZigBeeMeshUpdateScheduler meshUpdateScheduler;
 
     private ZigBeeCoordinatorDescription zigBeeCoordinatorDescription = new ZigBeeCoordinatorDescription();
 
@@ -198,6 +199,11 @@ public abstract class ZigBeeCoordinatorHandler
     public void dispose() {
         log.warn("Dispose zigbee node");
 
+        if (meshUpdateScheduler != null) {
+            meshUpdateScheduler.stop();
+            meshUpdateScheduler = null;
+        }
+
         if (networkManager != null) {
             for (ZigBeeNetworkNodeListener listener : nodeListeners) {
                 networkManager.removeNetworkNodeListener(listener);
@@ -288,10 +294,14 @@ public abstract class ZigBeeCoordinatorHandler
         int meshUpdateTime = entityContext.setting().getValue(ZigBeeMeshUpdatePeriodSetting.class);
 
         // Add the extensions to the network
+        // periodic mesh update of discovery extension refreshes all nodes at once, so it's replaced by staggered scheduler
         ZigBeeDiscoveryExtension discoveryExtension = new ZigBeeDiscoveryExtension();
-        discoveryExtension.setUpdatePeriod(meshUpdateTime);
+        discoveryExtension.setUpdatePeriod(0);
         networkManager.addExtension(discoveryExtension);
 
+        meshUpdateScheduler = new ZigBeeMeshUpdateScheduler(networkManager, meshUpdateTime);
+        meshUpdateScheduler.start();
+
         networkManager.addExtension(new ZigBeeIasCieExtension());
         networkManager.addExtension(new ZigBeeOtaUpgradeExtension());
 
@@ -504,6 +514,15 @@ public abstract class ZigBeeCoordinatorHandler
         return node.getEndpoints();
     }
 
+    /**
+     * Gets the mesh topology collected from neighbour tables
+     *
+     * @return the {@link ZigBeeMeshTopology} or null if network not initialised
+     */
+    public ZigBeeMeshTopology getMeshTopology() {
+        return meshUpdateScheduler == null ? null : meshUpdateScheduler.getTopology();
+    }
+
     public IeeeAddress getLocalIeeeAddress() {
         return networkManager.getLocalIeeeAddress();
     }
@@ -107,22 +107,31 @@ public class ZigBeeDevice implements ZigBeeNetworkNodeListener, ZigBeeAnnounceLi
 
             zigBeeConverterEndpoints.clear();
 
-            // update node description in thread or not
-            this.updateNodeDescription(node);
+            ZigBeeModelInterviewCache modelInterviewCache = this.discoveryService.getModelInterviewCache();
+            String modelKey = ZigBeeModelInterviewCache.getModelKey(node);
+            String clusterSignature = ZigBeeModelInterviewCache.getClusterSignature(node);
+            ZigBeeModelInterviewCache.ModelInterview modelInterview = modelInterviewCache.get(modelKey, clusterSignature);
+
+            if (modelInterview != null) {
+                // cached attributes matched stored interview, no need to read them again
+                this.updateNodeDescription(node, false, false);
+            } else {
+                // read basic attributes first, key is built from their cached values
+                this.updateNodeDescription(node, true, true);
+                modelKey = ZigBeeModelInterviewCache.getModelKey(node);
+                modelInterview = modelInterviewCache.get(modelKey, clusterSignature);
+            }
 
             this.addDevicePropertiesUpdateListener();
 
-            List<ZigBeeConverterEndpoint> zigBeeConverterEndpoints = new ArrayList<>();
-            // Dynamically create the zigBeeConverterEndpoints from the device
-            // Process all the endpoints for this device and add all zigBeeConverterEndpoints as derived from the supported clusters
-            for (ZigBeeEndpoint endpoint : this.discoveryService.getCoordinatorHandlers().getNodeEndpoints(nodeIeeeAddress)) {
-                log.debug("{}: Checking endpoint {} zigBeeConverterEndpoints", nodeIeeeAddress, endpoint.getEndpointId());
-                zigBeeConverterEndpoints.addAll(discoveryService.getZigBeeChannelConverterFactory().getZigBeeConverterEndpoints(endpoint));
-            }
-            log.debug("{}: Dynamically created {} zigBeeConverterEndpoints", nodeIeeeAddress, zigBeeConverterEndpoints.size());
-
-            if (zigBeeNodeDescription.getModelIdentifier() != null) {
-                zigBeeConverterEndpoints.addAll(findMissingRequireEndpointClusters(zigBeeConverterEndpoints));
+            List<ZigBeeConverterEndpoint> zigBeeConverterEndpoints = modelInterview == null ? null :
+                    modelInterviewCache.createConverterEndpoints(modelInterview,
+                            discoveryService.getZigBeeChannelConverterFactory(), nodeIeeeAddress.toString());
+            if (zigBeeConverterEndpoints != null) {
+                log.debug("{}: Apply cached interview of model <{}>", nodeIeeeAddress, modelKey);
+            } else {
+                modelInterview = null;
+                zigBeeConverterEndpoints = interviewConverterEndpoints();
             }
             for (ZigBeeConverterEndpoint zigBeeConverterEndpoint : zigBeeConverterEndpoints) {
                 ZigBeeEndpoint endpoint = node.getEndpoint(zigBeeConverterEndpoint.getEndpointId());
@@ -152,9 +161,16 @@ public class ZigBeeDevice implements ZigBeeNetworkNodeListener, ZigBeeAnnounceLi
                 pollingPeriod = 1800;
             }
 
+            String modelIdentifier = modelInterview != null ? modelInterview.getModelIdentifier() :
+                    zigBeeNodeDescription.getModelIdentifier();
+            // require endpoints may be overridden at runtime, so not taken from cached interview
+            boolean disablePooling = ZigBeeRequireEndpoints.get().isDisablePooling(modelIdentifier);
+            if (modelInterview == null) {
+                modelInterviewCache.put(modelKey, modelIdentifier, clusterSignature, zigBeeConverterEndpoints);
+            }
+
             int expectedUpdatePeriod = getExpectedUpdatePeriod(this.zigBeeConverterEndpoints.values());
-            if (!ZigBeeRequireEndpoints.get().isDisablePooling(zigBeeNodeDescription.getModelIdentifier())
-                    && expectedUpdatePeriod != Integer.MAX_VALUE) {
+            if (!disablePooling && expectedUpdatePeriod != Integer.MAX_VALUE) {
                 expectedUpdatePeriod = (expectedUpdatePeriod * 2) + 30;
                 log.debug("{}: Setting ONLINE/OFFLINE timeout interval to: {}", nodeIeeeAddress, expectedUpdatePeriod);
                 this.discoveryService.getZigBeeIsAliveTracker().addHandler(this, expectedUpdatePeriod);
@@ -188,12 +204,31 @@ public class ZigBeeDevice implements ZigBeeNetworkNodeListener, ZigBeeAnnounceLi
         }
     }
 
-    private void updateNodeDescription(ZigBeeNode node) {
+    /**
+     * Probe all converters against all node endpoints and add missed required endpoints
+     */
+    private List<ZigBeeConverterEndpoint> interviewConverterEndpoints() {
+        List<ZigBeeConverterEndpoint> zigBeeConverterEndpoints = new ArrayList<>();
+        // Dynamically create the zigBeeConverterEndpoints from the device
+        // Process all the endpoints for this device and add all zigBeeConverterEndpoints as derived from the supported clusters
+        for (ZigBeeEndpoint endpoint : this.discoveryService.getCoordinatorHandlers().getNodeEndpoints(nodeIeeeAddress)) {
+            log.debug("{}: Checking endpoint {} zigBeeConverterEndpoints", nodeIeeeAddress, endpoint.getEndpointId());
+            zigBeeConverterEndpoints.addAll(discoveryService.getZigBeeChannelConverterFactory().getZigBeeConverterEndpoints(endpoint));
+        }
+        log.debug("{}: Dynamically created {} zigBeeConverterEndpoints", nodeIeeeAddress, zigBeeConverterEndpoints.size());
+
+        if (zigBeeNodeDescription.getModelIdentifier() != null) {
+            zigBeeConverterEndpoints.addAll(findMissingRequireEndpointClusters(zigBeeConverterEndpoints));
+        }
+        return zigBeeConverterEndpoints;
+    }
+
+    private void updateNodeDescription(ZigBeeNode node, boolean readAttributes, boolean waitResponse) {
         this.zigBeeDeviceEntity = this.discoveryService.getEntityContext().getEntity(ZigBeeDeviceEntity.PREFIX + node.getIeeeAddress());
         if (zigBeeDeviceEntity == null || zigBeeDeviceEntity.getModelIdentifier() == null) {
-            startDiscoveryNodeDescription(node, null, true);
+            startDiscoveryNodeDescription(node, null, true, readAttributes);
         } else {
-            startDiscoveryNodeDescription(node, zigBeeDeviceEntity.getModelIdentifier(), false);
+            startDiscoveryNodeDescription(node, zigBeeDeviceEntity.getModelIdentifier(), waitResponse, readAttributes);
         }
     }
 
@@ -379,7 +414,12 @@ public class ZigBeeDevice implements ZigBeeNetworkNodeListener, ZigBeeAnnounceLi
 
     @Override
     public void nodeUpdated(ZigBeeNode node) {
-        if (!node.getIeeeAddress().equals(nodeIeeeAddress) || zigBeeNodeDescription.isNodeInitialized()) {
+        if (!node.getIeeeAddress().equals(nodeIeeeAddress)) {
+            return;
+        }
+        if (zigBeeNodeDescription.isNodeInitialized()) {
+            // mesh refresh only changes topology, no need to re-read basic attributes
+            zigBeeNodeDescription.updateTopologyFromNode(node);
             return;
         }
         log.debug("{}: Node has been updated. Fire initialize it.", nodeIeeeAddress);
@@ -413,16 +453,16 @@ public class ZigBeeDevice implements ZigBeeNetworkNodeListener, ZigBeeAnnounceLi
         if (node == null) {
             throw new IllegalStateException("Unable to find node: <" + nodeIeeeAddress + ">");
         }
-        startDiscoveryNodeDescription(node, savedModelIdentifier, false);
+        startDiscoveryNodeDescription(node, savedModelIdentifier, false, true);
     }
 
     @SneakyThrows
-    private void startDiscoveryNodeDescription(ZigBeeNode node, String savedModelIdentifier, boolean waitResponse) {
+    private void startDiscoveryNodeDescription(ZigBeeNode node, String savedModelIdentifier, boolean waitResponse, boolean readAttributes) {
         if (nodeDiscoveryThread != null && nodeDiscoveryThread.isAlive()) {
             throw new IllegalStateException("ACTION.ALREADY_STARTED");
         }
         nodeDiscoveryThread = new Thread(() -> {
-            this.zigBeeNodeDescription.updateFromNode(node);
+            this.zigBeeNodeDescription.updateFromNode(node, readAttributes);
             if (this.zigBeeNodeDescription.getModelIdentifier() == null) {
                 this.zigBeeNodeDescription.setModelIdentifier(savedModelIdentifier);
             }
@@ -0,0 +1,289 @@
+package org.touchhome.bundle.zigbee;
+
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.touchhome.bundle.zigbee.workspace.ScratchDeviceState;
+import org.touchhome.bundle.zigbee.workspace.ZigBeeDeviceUpdateValueListener;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pushes zigbee device state changes to server-sent event subscribers.
+ * Idle subscribers hold only an async {@link SseEmitter}. Writes of one subscriber are serialized on a bounded pool
+ * thread taken only while that subscriber has something to send, so slow client never delays others. Client which
+ * blocks single write longer than SEND_TIMEOUT is dropped.
+ * Every subscriber keeps only the latest not yet sent value per state key, so slow clients lose intermediate values.
+ * When pending values of subscriber exceed MAX_PENDING_BYTES it is lagging: pending values are discarded and
+ * 'resync' event is sent instead, after which client has to reload full state.
+ */
+@Log4j2
+@Component
+public class ZigBeeDeviceStateStreamService {
+
+    private static final int MAX_PENDING_BYTES = 256 * 1024;
+    // approximate size of event fields besides key and value
+    private static final int EVENT_OVERHEAD_BYTES = 64;
+    private static final int MAX_SEND_THREADS = 8;
+    private static final long SUBSCRIBER_TIMEOUT = TimeUnit.HOURS.toMillis(1);
+    private static final long SEND_TIMEOUT = TimeUnit.SECONDS.toMillis(5);
+
+    private final Set<Subscriber> subscribers = new CopyOnWriteArraySet<>();
+    // at most one task per subscriber is queued, idle threads exit after 60s
+    private final ThreadPoolExecutor sendExecutor = new ThreadPoolExecutor(MAX_SEND_THREADS, MAX_SEND_THREADS,
+            60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+        Thread thread = new Thread(r, "zigbee-state-stream");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ScheduledExecutorService sendTimeoutChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "zigbee-state-stream-timeout");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ZigBeeDeviceStateStreamService(ZigBeeDeviceUpdateValueListener deviceUpdateValueListener) {
+        sendExecutor.allowCoreThreadTimeOut(true);
+        deviceUpdateValueListener.addStateListener(this::stateUpdated);
+        sendTimeoutChecker.scheduleWithFixedDelay(this::dropStuckSubscribers, 1, 1, TimeUnit.SECONDS);
+    }
+
+    public void destroy() {
+        sendTimeoutChecker.shutdownNow();
+        sendExecutor.shutdownNow();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.emitter.complete();
+        }
+        subscribers.clear();
+    }
+
+    /**
+     * Every filter is optional. modelIdentifier matches by prefix, same as model identifier options filter,
+     * so i.e. 'lumi.sensor' selects whole family of devices.
+     */
+    public SseEmitter subscribe(String ieeeAddress, Integer clusterId, String clusterName, String modelIdentifier) {
+        SseEmitter emitter = new SseEmitter(SUBSCRIBER_TIMEOUT);
+        Subscriber subscriber = new Subscriber(emitter, ieeeAddress, clusterId, clusterName, modelIdentifier);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(ex -> {
+            log.debug("Zigbee state subscriber error: {}", ex.getMessage());
+            subscribers.remove(subscriber);
+        });
+        subscribers.add(subscriber);
+        log.debug("Add zigbee state subscriber. Total: {}", subscribers.size());
+        return emitter;
+    }
+
+    private void dropStuckSubscribers() {
+        long now = System.currentTimeMillis();
+        for (Subscriber subscriber : subscribers) {
+            long sendStartedAt = subscriber.sendStartedAt;
+            if (sendStartedAt != 0 && now - sendStartedAt > SEND_TIMEOUT) {
+                log.warn("Drop zigbee state subscriber which not accepted event in {}ms", SEND_TIMEOUT);
+                subscriber.close(new TimeoutException("Send timeout"));
+            }
+        }
+    }
+
+    private void stateUpdated(ScratchDeviceState scratchDeviceState) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        DeviceStateEvent event = null;
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.match(scratchDeviceState)) {
+                if (event == null) {
+                    event = new DeviceStateEvent(scratchDeviceState);
+                }
+                subscriber.offer(event);
+            }
+        }
+    }
+
+    @Getter
+    public static class DeviceStateEvent {
+        private final String ieeeAddress;
+        private final Integer clusterId;
+        private final Integer endpointId;
+        private final String clusterName;
+        private final String value;
+        private final long date;
+
+        DeviceStateEvent(ScratchDeviceState scratchDeviceState) {
+            ZigBeeDeviceStateUUID uuid = scratchDeviceState.getUuid();
+            this.ieeeAddress = uuid.getIeeeAddress();
+            this.clusterId = uuid.getClusterId();
+            this.endpointId = uuid.getEndpointId();
+            this.clusterName = uuid.getClusterName();
+            this.value = scratchDeviceState.getState() == null ? null : scratchDeviceState.getState().toString();
+            this.date = scratchDeviceState.getDate();
+        }
+
+        String getKey() {
+            return ieeeAddress + "_" + clusterId + "_" + endpointId + "_" + clusterName;
+        }
+
+        int getSize() {
+            return EVENT_OVERHEAD_BYTES + getKey().length() + (value == null ? 0 : value.length());
+        }
+    }
+
+    private class Subscriber {
+        private final SseEmitter emitter;
+        private final String ieeeAddress;
+        private final Integer clusterId;
+        private final String clusterName;
+        private final String modelIdentifier;
+
+        // latest not sent event per key, insertion ordered
+        private final Map<String, DeviceStateEvent> pending = new LinkedHashMap<>();
+        private final AtomicBoolean sending = new AtomicBoolean(false);
+        private int droppedEvents;
+        private int pendingBytes;
+        // pending values were discarded, client must be told to reload state
+        private boolean lagging;
+        // not 0 while emitter.send() runs
+        private volatile long sendStartedAt;
+        private volatile Future<?> sendTask;
+
+        Subscriber(SseEmitter emitter, String ieeeAddress, Integer clusterId, String clusterName, String modelIdentifier) {
+            this.emitter = emitter;
+            this.ieeeAddress = ieeeAddress;
+            this.clusterId = clusterId;
+            this.clusterName = clusterName;
+            this.modelIdentifier = modelIdentifier;
+        }
+
+        boolean match(ScratchDeviceState scratchDeviceState) {
+            ZigBeeDeviceStateUUID uuid = scratchDeviceState.getUuid();
+            if (ieeeAddress != null && !ieeeAddress.equals(uuid.getIeeeAddress())) {
+                return false;
+            }
+            if (clusterId != null && !clusterId.equals(uuid.getClusterId())) {
+                return false;
+            }
+            if (clusterName != null && !clusterName.equals(uuid.getClusterName())) {
+                return false;
+            }
+            if (modelIdentifier != null) {
+                String deviceModelIdentifier = scratchDeviceState.getZigBeeDevice().getZigBeeNodeDescription().getModelIdentifier();
+                return deviceModelIdentifier != null && deviceModelIdentifier.startsWith(modelIdentifier);
+            }
+            return true;
+        }
+
+        void offer(DeviceStateEvent event) {
+            synchronized (pending) {
+                DeviceStateEvent replaced = pending.put(event.getKey(), event);
+                if (replaced != null) {
+                    pendingBytes -= replaced.getSize();
+                    droppedEvents++;
+                }
+                pendingBytes += event.getSize();
+                if (pendingBytes > MAX_PENDING_BYTES) {
+                    log.warn("Zigbee state subscriber lagging, {} pending values replaced by resync", pending.size());
+                    droppedEvents += pending.size();
+                    pending.clear();
+                    pendingBytes = 0;
+                    lagging = true;
+                }
+            }
+            scheduleSend();
+        }
+
+        private void scheduleSend() {
+            if (subscribers.contains(this) && sending.compareAndSet(false, true)) {
+                try {
+                    sendTask = sendExecutor.submit(this::sendPending);
+                } catch (RejectedExecutionException ex) {
+                    sending.set(false);
+                }
+            }
+        }
+
+        void close(Exception ex) {
+            subscribers.remove(this);
+            Future<?> task = sendTask;
+            if (task != null) {
+                // unblock write if container supports interruption
+                task.cancel(true);
+            }
+            emitter.completeWithError(ex);
+        }
+
+        private void sendPending() {
+            try {
+                while (subscribers.contains(this)) {
+                    boolean resync = takeLagging();
+                    DeviceStateEvent event = resync ? null : poll();
+                    if (!resync && event == null) {
+                        break;
+                    }
+                    sendStartedAt = System.currentTimeMillis();
+                    if (resync) {
+                        emitter.send(SseEmitter.event().name("resync").data(""));
+                    } else {
+                        emitter.send(SseEmitter.event().name("state").data(event, MediaType.APPLICATION_JSON));
+                    }
+                    sendStartedAt = 0;
+                }
+            } catch (Exception ex) {
+                log.debug("Zigbee state subscriber disconnected: {}", ex.getMessage());
+                sendStartedAt = 0;
+                subscribers.remove(this);
+                emitter.completeWithError(ex);
+                return;
+            } finally {
+                sending.set(false);
+            }
+            // event may be offered after last poll but before releasing sending flag
+            synchronized (pending) {
+                if (pending.isEmpty() && !lagging) {
+                    return;
+                }
+            }
+            scheduleSend();
+        }
+
+        private boolean takeLagging() {
+            synchronized (pending) {
+                boolean wasLagging = lagging;
+                lagging = false;
+                return wasLagging;
+            }
+        }
+
+        private DeviceStateEvent poll() {
+            synchronized (pending) {
+                Iterator<DeviceStateEvent> iterator = pending.values().iterator();
+                if (!iterator.hasNext()) {
+                    if (droppedEvents > 0) {
+                        log.debug("Zigbee state subscriber skipped {} intermediate values", droppedEvents);
+                        droppedEvents = 0;
+                    }
+                    return null;
+                }
+                DeviceStateEvent event = iterator.next();
+                iterator.remove();
+                pendingBytes -= event.getSize();
+                return event;
+            }
+        }
+    }
+}
@@ -29,17 +29,20 @@ class ZigBeeDiscoveryService {
     private final ScheduledExecutorService scheduler;
     private final ZigBeeDeviceUpdateValueListener deviceUpdateListener;
     private final ZigBeeIsAliveTracker zigBeeIsAliveTracker;
+    private final ZigBeeModelInterviewCache modelInterviewCache;
 
     private volatile boolean scanStarted = false;
 
     ZigBeeDiscoveryService(EntityContext entityContext, ZigBeeCoordinatorHandler coordinatorHandlers,
                            ZigBeeIsAliveTracker zigBeeIsAliveTracker,
+                           ZigBeeModelInterviewCache modelInterviewCache,
                            ZigBeeChannelConverterFactory zigBeeChannelConverterFactory,
                            ScheduledExecutorService scheduler,
                            ZigBeeDeviceUpdateValueListener deviceUpdateListener) {
         this.entityContext = entityContext;
         this.coordinatorHandlers = coordinatorHandlers;
         this.zigBeeIsAliveTracker = zigBeeIsAliveTracker;
+        this.modelInterviewCache = modelInterviewCache;
         this.zigBeeChannelConverterFactory = zigBeeChannelConverterFactory;
         this.scheduler = scheduler;
         this.deviceUpdateListener = deviceUpdateListener;
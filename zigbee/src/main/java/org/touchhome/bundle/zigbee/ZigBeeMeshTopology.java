@@ -0,0 +1,80 @@
+package org.touchhome.bundle.zigbee;
+
+import com.zsmartsystems.zigbee.IeeeAddress;
+import com.zsmartsystems.zigbee.ZigBeeNode;
+import com.zsmartsystems.zigbee.zdo.field.NeighborTable;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Incremental view of the mesh built from node neighbour tables.
+ * Each refresh of a node only replaces links reported by that node, so the graph never has to be rebuilt as a whole.
+ */
+public class ZigBeeMeshTopology {
+
+    /**
+     * Links keyed by the reporting node and then by the neighbour node. Inner maps are concurrent too, because
+     * removeNode() modifies them while REST requests stream over them.
+     */
+    private final Map<IeeeAddress, Map<IeeeAddress, MeshLink>> links = new ConcurrentHashMap<>();
+
+    void updateNode(ZigBeeNode node) {
+        Set<NeighborTable> neighbors = node.getNeighbors();
+        if (neighbors == null) {
+            return;
+        }
+        Map<IeeeAddress, MeshLink> nodeLinks = new ConcurrentHashMap<>();
+        long updateTime = System.currentTimeMillis();
+        for (NeighborTable neighbor : neighbors) {
+            if (neighbor.getExtendedAddress() != null) {
+                nodeLinks.put(neighbor.getExtendedAddress(), new MeshLink(node.getIeeeAddress().toString(),
+                        neighbor.getExtendedAddress().toString(), neighbor.getLqi(), neighbor.getDepth(), updateTime));
+            }
+        }
+        links.put(node.getIeeeAddress(), nodeLinks);
+    }
+
+    void removeNode(IeeeAddress ieeeAddress) {
+        links.remove(ieeeAddress);
+        for (Map<IeeeAddress, MeshLink> nodeLinks : links.values()) {
+            nodeLinks.remove(ieeeAddress);
+        }
+    }
+
+    void clear() {
+        links.clear();
+    }
+
+    public Collection<MeshLink> getNodeLinks(IeeeAddress ieeeAddress) {
+        return links.getOrDefault(ieeeAddress, Collections.emptyMap()).values();
+    }
+
+    /**
+     * Gets links with lowest link quality first
+     *
+     * @param limit max number of links to return
+     * @return links sorted by lqi ascending
+     */
+    public List<MeshLink> getWeakestLinks(int limit) {
+        return links.values().stream().flatMap(l -> l.values().stream())
+                .sorted(Comparator.comparingInt(MeshLink::getLqi))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    @Getter
+    @ToString
+    @AllArgsConstructor
+    public static class MeshLink {
+        private final String source;
+        private final String target;
+        private final int lqi;
+        private final int depth;
+        private final long updateTime;
+    }
+}
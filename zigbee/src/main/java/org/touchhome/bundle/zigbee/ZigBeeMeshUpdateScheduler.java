@@ -0,0 +1,182 @@
+package org.touchhome.bundle.zigbee;
+
+import com.zsmartsystems.zigbee.*;
+import com.zsmartsystems.zigbee.app.discovery.ZigBeeNodeServiceDiscoverer;
+import com.zsmartsystems.zigbee.app.discovery.ZigBeeNodeServiceDiscoverer.NodeDiscoveryTask;
+import com.zsmartsystems.zigbee.zdo.field.NodeDescriptor;
+import com.zsmartsystems.zigbee.zdo.field.NodeDescriptor.MacCapabilitiesType;
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spreads neighbour/routing table refreshes evenly across the mesh update period instead of querying all nodes at once.
+ * Routers are refreshed every period, end devices every {@link #END_DEVICE_PERIOD_FACTOR} periods. Sleepy end devices
+ * (receiver off when idle) aren't queried, they wouldn't answer. When period is too short for one node per
+ * {@link #MIN_TICK_INTERVAL}, several nodes are refreshed per tick so every node is still visited once per period.
+ * Nodes which recently delivered traffic successfully are postponed, because their links are obviously alive.
+ */
+@Log4j2
+class ZigBeeMeshUpdateScheduler implements ZigBeeCommandListener, ZigBeeNetworkNodeListener {
+
+    private static final int END_DEVICE_PERIOD_FACTOR = 4;
+    private static final long MIN_TICK_INTERVAL = TimeUnit.SECONDS.toMillis(5);
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final ZigBeeNetworkManager networkManager;
+    private final long updatePeriod;
+
+    private final Map<IeeeAddress, Long> nextUpdateTime = new ConcurrentHashMap<>();
+    private final Map<IeeeAddress, Long> lastActivityTime = new ConcurrentHashMap<>();
+    // nodes refreshed by next tick, more than one only when tick interval hit MIN_TICK_INTERVAL
+    private volatile int nodesPerTick = 1;
+
+    @Getter
+    private final ZigBeeMeshTopology topology = new ZigBeeMeshTopology();
+
+    /**
+     * @param networkManager the network manager
+     * @param updatePeriod   mesh update period in seconds
+     */
+    ZigBeeMeshUpdateScheduler(ZigBeeNetworkManager networkManager, int updatePeriod) {
+        this.networkManager = networkManager;
+        this.updatePeriod = TimeUnit.SECONDS.toMillis(updatePeriod);
+    }
+
+    void start() {
+        networkManager.addCommandListener(this);
+        networkManager.addNetworkNodeListener(this);
+        for (ZigBeeNode node : networkManager.getNodes()) {
+            topology.updateNode(node);
+        }
+        if (updatePeriod > 0) {
+            log.info("Start mesh update scheduler with period: {}s", TimeUnit.MILLISECONDS.toSeconds(updatePeriod));
+            scheduleNextTick();
+        }
+    }
+
+    void stop() {
+        networkManager.removeCommandListener(this);
+        networkManager.removeNetworkNodeListener(this);
+        scheduler.shutdownNow();
+        topology.clear();
+    }
+
+    private synchronized void scheduleNextTick() {
+        if (scheduler.isShutdown()) {
+            return;
+        }
+        // weight end devices less because they are refreshed END_DEVICE_PERIOD_FACTOR times rarely
+        double updatesPerPeriod = 0;
+        for (ZigBeeNode node : networkManager.getNodes()) {
+            if (!isSleepy(node)) {
+                updatesPerPeriod += isRouter(node) ? 1D : 1D / END_DEVICE_PERIOD_FACTOR;
+            }
+        }
+        long tickInterval = Math.max(MIN_TICK_INTERVAL, (long) (updatePeriod / Math.max(updatesPerPeriod, 1D)));
+        nodesPerTick = Math.max(1, (int) Math.ceil(updatesPerPeriod * tickInterval / updatePeriod));
+        scheduler.schedule(this::tick, tickInterval, TimeUnit.MILLISECONDS);
+    }
+
+    private void tick() {
+        try {
+            for (int i = 0; i < nodesPerTick; i++) {
+                ZigBeeNode node = pollDueNode();
+                if (node == null) {
+                    break;
+                }
+                log.debug("{}: Refresh mesh tables", node.getIeeeAddress());
+                Set<NodeDiscoveryTask> tasks = EnumSet.of(NodeDiscoveryTask.NEIGHBORS);
+                if (isRouter(node)) {
+                    tasks.add(NodeDiscoveryTask.ROUTES);
+                }
+                new ZigBeeNodeServiceDiscoverer(networkManager, node).startDiscovery(tasks);
+            }
+        } catch (Exception ex) {
+            log.error("Error during mesh update", ex);
+        } finally {
+            scheduleNextTick();
+        }
+    }
+
+    /**
+     * Find node with earliest due time. Nodes with recent successful traffic are rescheduled instead of queried.
+     */
+    private ZigBeeNode pollDueNode() {
+        long now = System.currentTimeMillis();
+        ZigBeeNode dueNode = null;
+        long dueTime = Long.MAX_VALUE;
+        for (ZigBeeNode node : networkManager.getNodes()) {
+            if (node.getNetworkAddress() == 0 || isSleepy(node)) {
+                continue;
+            }
+            // new nodes get a random offset so they don't line up with each other
+            long nodeUpdateTime = nextUpdateTime.computeIfAbsent(node.getIeeeAddress(),
+                    a -> now + ThreadLocalRandom.current().nextLong(getNodePeriod(node)));
+            if (nodeUpdateTime > now) {
+                continue;
+            }
+            Long activityTime = lastActivityTime.get(node.getIeeeAddress());
+            if (activityTime != null && now - activityTime < getNodePeriod(node) / 2) {
+                log.trace("{}: Skip mesh update due recent activity", node.getIeeeAddress());
+                nextUpdateTime.put(node.getIeeeAddress(), now + getNodePeriod(node));
+                continue;
+            }
+            if (nodeUpdateTime < dueTime) {
+                dueTime = nodeUpdateTime;
+                dueNode = node;
+            }
+        }
+        if (dueNode != null) {
+            nextUpdateTime.put(dueNode.getIeeeAddress(), now + getNodePeriod(dueNode));
+        }
+        return dueNode;
+    }
+
+    private long getNodePeriod(ZigBeeNode node) {
+        return isRouter(node) ? updatePeriod : updatePeriod * END_DEVICE_PERIOD_FACTOR;
+    }
+
+    private boolean isRouter(ZigBeeNode node) {
+        return node.getLogicalType() != NodeDescriptor.LogicalType.END_DEVICE;
+    }
+
+    private boolean isSleepy(ZigBeeNode node) {
+        if (isRouter(node)) {
+            return false;
+        }
+        NodeDescriptor descriptor = node.getNodeDescriptor();
+        return descriptor == null || !descriptor.getMacCapabilities().contains(MacCapabilitiesType.RECEIVER_ON_WHEN_IDLE);
+    }
+
+    @Override
+    public void commandReceived(ZigBeeCommand command) {
+        ZigBeeNode node = networkManager.getNode(command.getSourceAddress().getAddress());
+        if (node != null) {
+            lastActivityTime.put(node.getIeeeAddress(), System.currentTimeMillis());
+        }
+    }
+
+    @Override
+    public void nodeAdded(ZigBeeNode node) {
+        topology.updateNode(node);
+    }
+
+    @Override
+    public void nodeUpdated(ZigBeeNode node) {
+        topology.updateNode(node);
+    }
+
+    @Override
+    public void nodeRemoved(ZigBeeNode node) {
+        nextUpdateTime.remove(node.getIeeeAddress());
+        lastActivityTime.remove(node.getIeeeAddress());
+        topology.removeNode(node.getIeeeAddress());
+    }
+}
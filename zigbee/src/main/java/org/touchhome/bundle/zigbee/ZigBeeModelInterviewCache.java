@@ -0,0 +1,171 @@
+package org.touchhome.bundle.zigbee;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zsmartsystems.zigbee.ZigBeeEndpoint;
+import com.zsmartsystems.zigbee.ZigBeeNode;
+import com.zsmartsystems.zigbee.zcl.ZclAttribute;
+import com.zsmartsystems.zigbee.zcl.clusters.ZclBasicCluster;
+import com.zsmartsystems.zigbee.zcl.clusters.ZclOtaUpgradeCluster;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.extern.log4j.Log4j2;
+import org.touchhome.bundle.api.util.TouchHomeUtils;
+import org.touchhome.bundle.zigbee.converter.impl.ZigBeeChannelConverterFactory;
+import org.touchhome.bundle.zigbee.converter.impl.ZigBeeConverterEndpoint;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.zsmartsystems.zigbee.zcl.clusters.ZclBasicCluster.*;
+
+/**
+ * Persistent cache of converter endpoints chosen for a device model.
+ * Key is built from manufacturer, model identifier and firmware version cached in the node, so building it sends
+ * nothing. Template is used only if endpoint/cluster signature of the node equals the stored one, so no interview
+ * is needed to verify it. Pooling flag isn't part of template, it is taken from require endpoints on every use.
+ */
+@Log4j2
+class ZigBeeModelInterviewCache {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Path cachePath = TouchHomeUtils.resolvePath("zigbee").resolve("model-interview-cache.json");
+    private final Map<String, ModelInterview> interviews = new ConcurrentHashMap<>();
+
+    ZigBeeModelInterviewCache() {
+        if (Files.exists(cachePath)) {
+            try {
+                interviews.putAll(objectMapper.readValue(cachePath.toFile(), new TypeReference<Map<String, ModelInterview>>() {
+                }));
+                log.info("Loaded {} zigbee model interviews", interviews.size());
+            } catch (Exception ex) {
+                log.error("Unable to read zigbee model interview cache", ex);
+            }
+        }
+    }
+
+    /**
+     * Build cache key from cached basic attributes of the node.
+     *
+     * @param node the {@link ZigBeeNode}
+     * @return key or null if device has no basic cluster or attributes not read yet
+     */
+    static String getModelKey(ZigBeeNode node) {
+        ZclBasicCluster basicCluster = (ZclBasicCluster) node.getEndpoints().stream()
+                .map(ep -> ep.getInputCluster(ZclBasicCluster.CLUSTER_ID)).filter(Objects::nonNull).findFirst()
+                .orElse(null);
+        if (basicCluster == null) {
+            return null;
+        }
+        Object manufacturer = getLastValue(basicCluster.getAttribute(ATTR_MANUFACTURERNAME));
+        Object modelIdentifier = getLastValue(basicCluster.getAttribute(ATTR_MODELIDENTIFIER));
+        if (manufacturer == null || modelIdentifier == null) {
+            return null;
+        }
+        Object firmwareVersion = node.getEndpoints().stream()
+                .map(ep -> ep.getOutputCluster(ZclOtaUpgradeCluster.CLUSTER_ID)).filter(Objects::nonNull)
+                .map(c -> getLastValue(c.getAttribute(ZclOtaUpgradeCluster.ATTR_CURRENTFILEVERSION)))
+                .filter(Objects::nonNull).findFirst()
+                .orElseGet(() -> getLastValue(basicCluster.getAttribute(ATTR_APPLICATIONVERSION)));
+        return manufacturer + "/" + modelIdentifier + "/" + firmwareVersion;
+    }
+
+    private static Object getLastValue(ZclAttribute attribute) {
+        return attribute == null ? null : attribute.getLastValue();
+    }
+
+    /**
+     * Endpoints with their input/output cluster ids, known from node discovery so building it sends nothing
+     */
+    static String getClusterSignature(ZigBeeNode node) {
+        StringBuilder signature = new StringBuilder();
+        node.getEndpoints().stream().sorted(Comparator.comparingInt(ZigBeeEndpoint::getEndpointId)).forEach(endpoint ->
+                signature.append(endpoint.getEndpointId()).append(':')
+                        .append(new TreeSet<>(endpoint.getInputClusterIds())).append('/')
+                        .append(new TreeSet<>(endpoint.getOutputClusterIds())).append(';'));
+        return signature.toString();
+    }
+
+    /**
+     * @return interview of model or null if not cached or cached for node with other clusters
+     */
+    ModelInterview get(String modelKey, String clusterSignature) {
+        ModelInterview interview = modelKey == null ? null : interviews.get(modelKey);
+        if (interview != null && !Objects.equals(interview.getClusterSignature(), clusterSignature)) {
+            log.info("Cached interview of model <{}> has different cluster signature. Interview device", modelKey);
+            return null;
+        }
+        return interview;
+    }
+
+    /**
+     * Creates converter endpoints from template
+     *
+     * @return list of endpoints or null if template references unknown converter
+     */
+    List<ZigBeeConverterEndpoint> createConverterEndpoints(ModelInterview interview, ZigBeeChannelConverterFactory factory,
+                                                           String ieeeAddress) {
+        List<ZigBeeConverterEndpoint> endpoints = new ArrayList<>();
+        for (ConverterTemplate template : interview.getConverters()) {
+            ZigBeeConverterEndpoint endpoint = factory.createConverterEndpoint(template.getName(), ieeeAddress, template.getEndpointId());
+            if (endpoint == null) {
+                return null;
+            }
+            endpoints.add(endpoint);
+        }
+        return endpoints;
+    }
+
+    void put(String modelKey, String modelIdentifier, String clusterSignature,
+             Collection<ZigBeeConverterEndpoint> converterEndpoints) {
+        if (modelKey == null) {
+            return;
+        }
+        ModelInterview interview = new ModelInterview();
+        interview.setModelIdentifier(modelIdentifier);
+        interview.setClusterSignature(clusterSignature);
+        for (ZigBeeConverterEndpoint converterEndpoint : converterEndpoints) {
+            interview.getConverters().add(new ConverterTemplate(converterEndpoint.getEndpointId(), converterEndpoint.getClusterName()));
+        }
+        if (!interview.equals(interviews.put(modelKey, interview))) {
+            log.info("Store zigbee model interview <{}>", modelKey);
+            save();
+        }
+    }
+
+    private synchronized void save() {
+        try {
+            objectMapper.writeValue(cachePath.toFile(), interviews);
+        } catch (Exception ex) {
+            log.error("Unable to save zigbee model interview cache", ex);
+        }
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @EqualsAndHashCode
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    static class ModelInterview {
+        private String modelIdentifier;
+        private String clusterSignature;
+        private Set<ConverterTemplate> converters = new HashSet<>();
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    static class ConverterTemplate {
+        private int endpointId;
+        private String name;
+    }
+}
@@ -92,8 +92,14 @@ public class ZigBeeNodeDescription {
         return "Expired in: " + min + "min";
     }
 
+    /**
+     * Fetch node properties
+     *
+     * @param node           the {@link ZigBeeNode}
+     * @param readAttributes if false - attributes with already known values are taken from cache instead of device
+     */
     @SneakyThrows
-    void updateFromNode(ZigBeeNode node) {
+    void updateFromNode(ZigBeeNode node, boolean readAttributes) {
         log.info("Starting fetch info from ZigBeeNode: <{}>", node.getIeeeAddress().toString());
         this.fetchInfoStatus = FetchInfoStatus.STARTED;
         this.logicalType = node.getLogicalType();
@@ -119,15 +125,17 @@ public class ZigBeeNodeDescription {
 
         // Attempt to read all properties with a single command.
         // If successful, this updates the cache with the property values.
-        try {
-            // Try to get the supported attributes so we can reduce the number of attribute read requests
-            basicCluster.discoverAttributes(false).get();
-
-            basicCluster.readAttributes(Arrays.asList(ATTR_MANUFACTURERNAME, ATTR_MODELIDENTIFIER, ATTR_HWVERSION,
-                    ATTR_APPLICATIONVERSION, ATTR_STACKVERSION, ATTR_ZCLVERSION, ATTR_DATECODE)).get();
-        } catch (InterruptedException | ExecutionException e) {
-            log.info("{}: There was an error when trying to read all properties with a single command.",
-                    node.getIeeeAddress(), e);
+        if (readAttributes) {
+            try {
+                // Try to get the supported attributes so we can reduce the number of attribute read requests
+                basicCluster.discoverAttributes(false).get();
+
+                basicCluster.readAttributes(Arrays.asList(ATTR_MANUFACTURERNAME, ATTR_MODELIDENTIFIER, ATTR_HWVERSION,
+                        ATTR_APPLICATIONVERSION, ATTR_STACKVERSION, ATTR_ZCLVERSION, ATTR_DATECODE)).get();
+            } catch (InterruptedException | ExecutionException e) {
+                log.info("{}: There was an error when trying to read all properties with a single command.",
+                        node.getIeeeAddress(), e);
+            }
         }
 
         this.manufacturer = (String) basicCluster.getAttribute(ATTR_MANUFACTURERNAME).readValue(Long.MAX_VALUE);
@@ -142,6 +150,14 @@ public class ZigBeeNodeDescription {
         this.fetchInfoStatus = FetchInfoStatus.FINISHED;
     }
 
+    void updateTopologyFromNode(ZigBeeNode node) {
+        this.networkAddress = node.getNetworkAddress();
+        this.associatedDevices = node.getAssociatedDevices();
+        this.lastUpdateTime = node.getLastUpdateTime();
+        this.neighbors = node.getNeighbors();
+        this.routes = node.getRoutes();
+    }
+
     private void addPropertiesFromOtaCluster(ZigBeeNode node) {
         ZclOtaUpgradeCluster otaCluster = (ZclOtaUpgradeCluster) node.getEndpoints().stream()
                 .map(ep -> ep.getOutputCluster(ZclOtaUpgradeCluster.CLUSTER_ID)).filter(Objects::nonNull).findFirst()
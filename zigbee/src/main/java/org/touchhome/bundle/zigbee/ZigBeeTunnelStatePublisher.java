@@ -0,0 +1,31 @@
+package org.touchhome.bundle.zigbee;
+
+import org.springframework.stereotype.Component;
+import org.touchhome.bundle.cloud.netty.impl.NettyClientService;
+import org.touchhome.bundle.cloud.netty.impl.TunnelEventPublisher;
+import org.touchhome.bundle.zigbee.workspace.ScratchDeviceState;
+import org.touchhome.bundle.zigbee.workspace.ZigBeeDeviceUpdateValueListener;
+
+import java.util.Optional;
+
+/**
+ * Pushes zigbee device state changes to cloud tunnel subscribers. Does nothing while cloud tunnel service is disabled.
+ */
+@Component
+public class ZigBeeTunnelStatePublisher {
+
+    public ZigBeeTunnelStatePublisher(ZigBeeDeviceUpdateValueListener deviceUpdateValueListener,
+                                      Optional<NettyClientService> nettyClientService) {
+        nettyClientService.ifPresent(service -> {
+            TunnelEventPublisher eventPublisher = service.getEventPublisher();
+            deviceUpdateValueListener.addStateListener(state -> stateUpdated(eventPublisher, state));
+        });
+    }
+
+    private static void stateUpdated(TunnelEventPublisher eventPublisher, ScratchDeviceState scratchDeviceState) {
+        ZigBeeDeviceStateUUID uuid = scratchDeviceState.getUuid();
+        String stateKey = uuid.getClusterId() + "_" + uuid.getEndpointId() + "_" + uuid.getClusterName();
+        String value = scratchDeviceState.getState() == null ? null : scratchDeviceState.getState().toString();
+        eventPublisher.publishDeviceState(uuid.getIeeeAddress(), stateKey, value, scratchDeviceState.getDate());
+    }
+}
@@ -2,17 +2,13 @@ package org.touchhome.bundle.zigbee.converter.impl;
 
 import com.zsmartsystems.zigbee.IeeeAddress;
 import com.zsmartsystems.zigbee.ZigBeeEndpoint;
-import lombok.SneakyThrows;
 import lombok.extern.log4j.Log4j2;
-import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.stereotype.Component;
-import org.touchhome.bundle.api.EntityContext;
 import org.touchhome.bundle.zigbee.ZigBeeCoordinatorHandler;
 import org.touchhome.bundle.zigbee.ZigBeeDevice;
 import org.touchhome.bundle.zigbee.converter.ZigBeeBaseChannelConverter;
 import org.touchhome.bundle.zigbee.requireEndpoint.RequireEndpoint;
 
-import java.lang.reflect.Constructor;
 import java.util.*;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -23,27 +19,20 @@ import java.util.stream.IntStream;
 public final class ZigBeeChannelConverterFactory {
 
     /**
-     * Map of all zigbeeRequireEndpoints supported by the binding
+     * All converters supported by the binding. Registry generated at compile time by ZigBeeConverterRegistryProcessor
      */
-    private final Map<ZigBeeConverter, Class<? extends ZigBeeBaseChannelConverter>> channelMap;
+    private final List<ZigBeeConverterDefinition> converters = ZigBeeConverterRegistry.CONVERTERS;
 
-    private final List<Class<? extends ZigBeeBaseChannelConverter>> converters;
+    private final Map<String, ZigBeeConverterDefinition> converterByName = converters.stream()
+            .collect(Collectors.toMap(ZigBeeConverterDefinition::getName, Function.identity()));
 
-    public ZigBeeChannelConverterFactory(EntityContext entityContext) {
-        converters = entityContext.getClassesWithAnnotation(ZigBeeConverter.class);
-
-        channelMap = converters.stream().collect(Collectors
-                .toMap((Function<Class, ZigBeeConverter>) aClass -> AnnotationUtils.getAnnotation(aClass, ZigBeeConverter.class), c -> c));
-    }
-
-    @SneakyThrows
     public Collection<ZigBeeConverterEndpoint> getZigBeeConverterEndpoints(ZigBeeEndpoint endpoint) {
         Map<String, ZigBeeConverterEndpoint> zigBeeEndpoints = new HashMap<>();
 
-        for (Map.Entry<ZigBeeConverter, Class<? extends ZigBeeBaseChannelConverter>> converterEntry : channelMap.entrySet()) {
-            ZigBeeBaseChannelConverter converter = converterEntry.getValue().getConstructor().newInstance();
+        for (ZigBeeConverterDefinition converterDefinition : converters) {
+            ZigBeeBaseChannelConverter converter = converterDefinition.newConverter();
             if (converter.acceptEndpoint(endpoint)) {
-                ZigBeeConverterEndpoint zigBeeConverterEndpoint = new ZigBeeConverterEndpoint(converterEntry.getKey(), endpoint.getIeeeAddress().toString(), endpoint.getEndpointId());
+                ZigBeeConverterEndpoint zigBeeConverterEndpoint = new ZigBeeConverterEndpoint(converterDefinition, endpoint.getIeeeAddress().toString(), endpoint.getEndpointId());
                 zigBeeEndpoints.put(zigBeeConverterEndpoint.getClusterName(), zigBeeConverterEndpoint);
             }
         }
@@ -63,10 +52,8 @@ public final class ZigBeeChannelConverterFactory {
 
     public ZigBeeBaseChannelConverter createConverter(ZigBeeDevice zigBeeDevice, ZigBeeConverterEndpoint zigBeeConverterEndpoint,
                                                       ZigBeeCoordinatorHandler coordinatorHandler, IeeeAddress ieeeAddress) {
-        Constructor<? extends ZigBeeBaseChannelConverter> constructor;
         try {
-            constructor = channelMap.get(zigBeeConverterEndpoint.getZigBeeConverter()).getConstructor();
-            ZigBeeBaseChannelConverter instance = constructor.newInstance();
+            ZigBeeBaseChannelConverter instance = zigBeeConverterEndpoint.getConverterDefinition().newConverter();
 
             instance.initialize(zigBeeDevice, zigBeeConverterEndpoint, coordinatorHandler, ieeeAddress, zigBeeConverterEndpoint.getEndpointId());
             return instance;
@@ -78,17 +65,27 @@ public final class ZigBeeChannelConverterFactory {
     }
 
     public Set<Integer> getImplementedClientClusters() {
-        return channelMap.keySet().stream().flatMapToInt(c -> IntStream.of(c.clientClusters()))
+        return converters.stream().flatMapToInt(c -> IntStream.of(c.getClientClusters()))
                 .boxed().collect(Collectors.toSet());
     }
 
     public Set<Integer> getImplementedServerClusters() {
-        return channelMap.keySet().stream().flatMapToInt(c -> IntStream.of(c.serverClusters()))
+        return converters.stream().flatMapToInt(c -> IntStream.of(c.getServerClusters()))
                 .boxed().collect(Collectors.toSet());
     }
 
+    /**
+     * Creates converter endpoint by converter name without probing the device
+     *
+     * @return the {@link ZigBeeConverterEndpoint} or null if no converter with such name
+     */
+    public ZigBeeConverterEndpoint createConverterEndpoint(String converterName, String ieeeAddress, int endpointId) {
+        ZigBeeConverterDefinition converterDefinition = converterByName.get(converterName);
+        return converterDefinition == null ? null : new ZigBeeConverterEndpoint(converterDefinition, ieeeAddress, endpointId);
+    }
+
     public List<ZigBeeConverterEndpoint> createConverterEndpoint(RequireEndpoint re, String ieeeAddress) {
-        return channelMap.keySet().stream().filter(re::match).map(zigBeeConverter ->
-                new ZigBeeConverterEndpoint(zigBeeConverter, ieeeAddress, re.getEndpoint())).collect(Collectors.toList());
+        return converters.stream().filter(re::match).map(converterDefinition ->
+                new ZigBeeConverterEndpoint(converterDefinition, ieeeAddress, re.getEndpoint())).collect(Collectors.toList());
     }
 }
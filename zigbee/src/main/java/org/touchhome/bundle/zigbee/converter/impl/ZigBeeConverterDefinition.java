@@ -0,0 +1,33 @@
+package org.touchhome.bundle.zigbee.converter.impl;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.touchhome.bundle.zigbee.converter.DeviceChannelLinkType;
+import org.touchhome.bundle.zigbee.converter.ZigBeeBaseChannelConverter;
+
+import java.util.function.Supplier;
+
+/**
+ * Metadata of class annotated with {@link ZigBeeConverter}. Instances are created at compile time into
+ * generated ZigBeeConverterRegistry, so no classpath scanning or reflection needed at runtime.
+ */
+@Getter
+@AllArgsConstructor
+public final class ZigBeeConverterDefinition {
+    private final Class<? extends ZigBeeBaseChannelConverter> converterClass;
+    private final Supplier<? extends ZigBeeBaseChannelConverter> constructor;
+    private final String name;
+    private final String description;
+    private final int[] clientClusters;
+    private final int[] serverClusters;
+    private final DeviceChannelLinkType linkType;
+
+    public ZigBeeBaseChannelConverter newConverter() {
+        return constructor.get();
+    }
+
+    @Override
+    public String toString() {
+        return "ZigBeeConverterDefinition{name='" + name + "', converterClass=" + converterClass.getSimpleName() + "}";
+    }
+}
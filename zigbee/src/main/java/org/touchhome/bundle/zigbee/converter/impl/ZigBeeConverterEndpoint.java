@@ -18,11 +18,11 @@ public class ZigBeeConverterEndpoint {
     private final int endpointId;
     private final String clusterName;
 
-    private ZigBeeConverter zigBeeConverter;
+    private ZigBeeConverterDefinition converterDefinition;
 
-    ZigBeeConverterEndpoint(ZigBeeConverter zigBeeConverter, String ieeeAddress, int endpointId) {
-        this(ieeeAddress, zigBeeConverter.clientClusters()[0], endpointId, zigBeeConverter.name());
-        this.zigBeeConverter = zigBeeConverter;
+    ZigBeeConverterEndpoint(ZigBeeConverterDefinition converterDefinition, String ieeeAddress, int endpointId) {
+        this(ieeeAddress, converterDefinition.getClientClusters()[0], endpointId, converterDefinition.getName());
+        this.converterDefinition = converterDefinition;
     }
 
     public ZigBeeDeviceStateUUID toUUID() {
@@ -50,6 +50,6 @@ public class ZigBeeConverterEndpoint {
     }
 
     public String getClusterDescription() {
-        return defaultIfEmpty(zigBeeConverter.description(), clusterName);
+        return defaultIfEmpty(converterDefinition.getDescription(), clusterName);
     }
 }
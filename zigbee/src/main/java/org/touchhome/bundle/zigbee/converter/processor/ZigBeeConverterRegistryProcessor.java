@@ -0,0 +1,115 @@
+package org.touchhome.bundle.zigbee.converter.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Generates ZigBeeConverterRegistry with all classes annotated with ZigBeeConverter, their metadata and constructor
+ * references. Processor is compiled in separate compiler execution before the rest of module (see pom.xml),
+ * so it must not depend on module classes or lombok.
+ */
+@SupportedAnnotationTypes(ZigBeeConverterRegistryProcessor.ANNOTATION)
+public class ZigBeeConverterRegistryProcessor extends AbstractProcessor {
+
+    static final String ANNOTATION = "org.touchhome.bundle.zigbee.converter.impl.ZigBeeConverter";
+    private static final String REGISTRY_PACKAGE = "org.touchhome.bundle.zigbee.converter.impl";
+    private static final String REGISTRY_CLASS = "ZigBeeConverterRegistry";
+
+    // converter class name -> definition source
+    private final Map<String, String> definitions = new TreeMap<>();
+    private boolean registryWritten;
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                TypeElement converter = (TypeElement) element;
+                if (isValidConverter(converter)) {
+                    definitions.put(converter.getQualifiedName().toString(), createDefinition(converter, annotation));
+                }
+            }
+        }
+        // all converters are in the same compilation unit set, so registry is written in first round
+        if (!registryWritten && !definitions.isEmpty()) {
+            registryWritten = true;
+            writeRegistry();
+        }
+        return false;
+    }
+
+    private boolean isValidConverter(TypeElement converter) {
+        if (converter.getKind() != ElementKind.CLASS || converter.getModifiers().contains(Modifier.ABSTRACT)
+                || !converter.getModifiers().contains(Modifier.PUBLIC)) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "ZigBeeConverter must be public not abstract class", converter);
+            return false;
+        }
+        List<ExecutableElement> constructors = ElementFilter.constructorsIn(converter.getEnclosedElements());
+        boolean hasDefaultConstructor = constructors.stream().anyMatch(c -> c.getParameters().isEmpty()
+                && c.getModifiers().contains(Modifier.PUBLIC));
+        if (!hasDefaultConstructor) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "ZigBeeConverter must have public no-arg constructor", converter);
+        }
+        return hasDefaultConstructor;
+    }
+
+    private String createDefinition(TypeElement converter, TypeElement annotation) {
+        AnnotationMirror mirror = converter.getAnnotationMirrors().stream()
+                .filter(m -> m.getAnnotationType().asElement().equals(annotation)).findAny()
+                .orElseThrow(() -> new IllegalStateException("Annotation not found on " + converter));
+        Map<String, AnnotationValue> values = processingEnv.getElementUtils().getElementValuesWithDefaults(mirror)
+                .entrySet().stream().collect(Collectors.toMap(e -> e.getKey().getSimpleName().toString(), Map.Entry::getValue));
+
+        String className = converter.getQualifiedName().toString();
+        return "new ZigBeeConverterDefinition(" + className + ".class, " + className + "::new, " +
+                stringValue(values.get("name")) + ", " +
+                stringValue(values.get("description")) + ", " +
+                intArrayValue(values.get("clientClusters")) + ", " +
+                intArrayValue(values.get("serverClusters")) + ", " +
+                "DeviceChannelLinkType." + ((VariableElement) values.get("linkType").getValue()).getSimpleName() + ")";
+    }
+
+    private String stringValue(AnnotationValue value) {
+        return processingEnv.getElementUtils().getConstantExpression(value.getValue());
+    }
+
+    @SuppressWarnings("unchecked")
+    private String intArrayValue(AnnotationValue value) {
+        List<? extends AnnotationValue> items = (List<? extends AnnotationValue>) value.getValue();
+        return "new int[]{" + items.stream().map(v -> String.valueOf(v.getValue())).collect(Collectors.joining(", ")) + "}";
+    }
+
+    private void writeRegistry() {
+        try (Writer writer = processingEnv.getFiler().createSourceFile(REGISTRY_PACKAGE + "." + REGISTRY_CLASS).openWriter()) {
+            writer.write("package " + REGISTRY_PACKAGE + ";\n\n");
+            writer.write("import org.touchhome.bundle.zigbee.converter.DeviceChannelLinkType;\n\n");
+            writer.write("import java.util.Arrays;\nimport java.util.Collections;\nimport java.util.List;\n\n");
+            writer.write("/**\n * Generated by " + getClass().getSimpleName() + ". Do not edit.\n */\n");
+            writer.write("public final class " + REGISTRY_CLASS + " {\n\n");
+            writer.write("    public static final List<ZigBeeConverterDefinition> CONVERTERS = Collections.unmodifiableList(Arrays.asList(\n");
+            writer.write(definitions.values().stream().map(d -> "            " + d).collect(Collectors.joining(",\n")));
+            writer.write("));\n\n");
+            writer.write("    private " + REGISTRY_CLASS + "() {\n    }\n}\n");
+        } catch (IOException ex) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Unable to write " + REGISTRY_CLASS + ": " + ex.getMessage());
+        }
+    }
+}
@@ -226,7 +226,7 @@ public final class ZigBeeDeviceEntity extends DeviceBaseEntity<ZigBeeDeviceEntit
             ZigBeeDeviceStateUUID uuid = converterEndpoint.toUUID();
 
             Map<OptionModel, String> map = new HashMap<>();
-            DeviceChannelLinkType deviceChannelLinkType = availableLinkEntry.getKey().getZigBeeConverter().linkType();
+            DeviceChannelLinkType deviceChannelLinkType = availableLinkEntry.getKey().getConverterDefinition().getLinkType();
 
             ZigBeeDeviceUpdateValueListener.LinkDescription linkDescription = zigBeeDeviceUpdateValueListener.getLinkListeners().get(uuid);
 
@@ -246,7 +246,7 @@ public final class ZigBeeDeviceEntity extends DeviceBaseEntity<ZigBeeDeviceEntit
 
     public final List<Map.Entry<ZigBeeConverterEndpoint, ZigBeeBaseChannelConverter>> gatherAvailableLinks() {
         return zigBeeDevice == null ? Collections.emptyList() : zigBeeDevice.getZigBeeConverterEndpoints().entrySet()
-                .stream().filter(c -> c.getKey().getZigBeeConverter().linkType() != DeviceChannelLinkType.None)
+                .stream().filter(c -> c.getKey().getConverterDefinition().getLinkType() != DeviceChannelLinkType.None)
                 .collect(Collectors.toList());
     }
 }
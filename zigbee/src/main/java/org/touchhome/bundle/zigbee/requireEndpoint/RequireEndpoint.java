@@ -4,7 +4,7 @@ import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
 import org.touchhome.bundle.zigbee.ZigBeeController;
-import org.touchhome.bundle.zigbee.converter.impl.ZigBeeConverter;
+import org.touchhome.bundle.zigbee.converter.impl.ZigBeeConverterDefinition;
 import org.touchhome.bundle.zigbee.converter.impl.ZigBeeConverterEndpoint;
 
 @Getter
@@ -15,8 +15,8 @@ public class RequireEndpoint {
     private int inputCluster;
     private String typeId;
 
-    public boolean match(ZigBeeConverter zigBeeConverter) {
-        return zigBeeConverter.name().equals(typeId) && ZigBeeController.containsAny(zigBeeConverter.clientClusters(), inputCluster);
+    public boolean match(ZigBeeConverterDefinition converterDefinition) {
+        return converterDefinition.getName().equals(typeId) && ZigBeeController.containsAny(converterDefinition.getClientClusters(), inputCluster);
     }
 
     public boolean match(ZigBeeConverterEndpoint converter) {
@@ -1,50 +1,188 @@
 package org.touchhome.bundle.zigbee.requireEndpoint;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.Getter;
 import lombok.Setter;
+import lombok.extern.log4j.Log4j2;
 import org.touchhome.bundle.api.util.TouchHomeUtils;
 import org.touchhome.bundle.zigbee.ZigBeeNodeDescription;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
 
+/**
+ * Catalogue of known device models. Bundled 'zigBee/device-properties.json' files may be extended or overridden by
+ * user file 'zigbee/device-properties.json' which is re-read when changed.
+ * Catalogue is compiled into indexes so lookups don't scan all models.
+ */
+@Log4j2
 public final class ZigBeeRequireEndpoints {
 
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final long OVERRIDE_CHECK_INTERVAL = TimeUnit.SECONDS.toMillis(10);
+    private static final Path OVERRIDE_PATH = TouchHomeUtils.resolvePath("zigbee").resolve("device-properties.json");
+    private static final List<ZigBeeRequireEndpoint> BUNDLED_ENDPOINTS = new ArrayList<>();
     private static final ZigBeeRequireEndpoints INSTANCE;
 
     static {
-        INSTANCE = new ZigBeeRequireEndpoints();
         for (ZigBeeRequireEndpoints file : TouchHomeUtils.readJSON("zigBee/device-properties.json", ZigBeeRequireEndpoints.class)) {
-            INSTANCE.getZigBeeRequireEndpoints().addAll(file.getZigBeeRequireEndpoints());
+            BUNDLED_ENDPOINTS.addAll(file.getZigBeeRequireEndpoints());
         }
+        INSTANCE = new ZigBeeRequireEndpoints();
+        INSTANCE.reloadIfOverrideChanged();
     }
 
     @Getter
     @Setter
     private List<ZigBeeRequireEndpoint> zigBeeRequireEndpoints = new ArrayList<>();
 
+    private volatile Index index;
+    private long overrideLastModified = -1;
+    private volatile long lastOverrideCheck;
+
     public static ZigBeeRequireEndpoints get() {
+        INSTANCE.checkOverrideFile();
         return INSTANCE;
     }
 
     public String getImage(String modelId) {
-        return zigBeeRequireEndpoints.stream().filter(c -> c.getModelId().equals(modelId)).map(ZigBeeRequireEndpoint::getImage).findAny().orElse(null);
+        return getZigBeeRequireEndpoint(modelId).map(ZigBeeRequireEndpoint::getImage).orElse(null);
     }
 
     public ZigBeeRequireEndpoint findByNode(ZigBeeNodeDescription zigBeeNodeDescription) {
-        return this.zigBeeRequireEndpoints.stream().filter(c -> c.matchAllTypes(zigBeeNodeDescription.getChannels())).findAny().orElse(null);
+        return index.findByChannels(zigBeeNodeDescription.getChannels());
     }
 
+    /**
+     * Require endpoints of all catalogue entries of model merged
+     */
     public Stream<RequireEndpoint> getRequireEndpoints(String modelIdentifier) {
-        return zigBeeRequireEndpoints.stream().filter(c -> c.getModelId().equals(modelIdentifier))
-                .map(ZigBeeRequireEndpoint::getRequireEndpoints).filter(Objects::nonNull).flatMap(Collection::stream);
+        return index.getByModelId(modelIdentifier).stream().map(ZigBeeRequireEndpoint::getRequireEndpoints)
+                .filter(Objects::nonNull).flatMap(Collection::stream);
     }
 
+    /**
+     * @return first catalogue entry of model
+     */
     public Optional<ZigBeeRequireEndpoint> getZigBeeRequireEndpoint(String modelIdentifier) {
-        return zigBeeRequireEndpoints.stream().filter(c -> c.getModelId().equals(modelIdentifier)).findAny();
+        return index.getByModelId(modelIdentifier).stream().findFirst();
     }
 
     public boolean isDisablePooling(String modelIdentifier) {
         return getZigBeeRequireEndpoint(modelIdentifier).map(ZigBeeRequireEndpoint::isDisablePooling).orElse(false);
     }
+
+    private void checkOverrideFile() {
+        long now = System.currentTimeMillis();
+        if (now - lastOverrideCheck >= OVERRIDE_CHECK_INTERVAL) {
+            lastOverrideCheck = now;
+            reloadIfOverrideChanged();
+        }
+    }
+
+    private synchronized void reloadIfOverrideChanged() {
+        long lastModified = Files.exists(OVERRIDE_PATH) ? OVERRIDE_PATH.toFile().lastModified() : 0;
+        if (lastModified == overrideLastModified) {
+            return;
+        }
+        overrideLastModified = lastModified;
+
+        // user defined models go first and replace bundled models with same modelId
+        List<ZigBeeRequireEndpoint> endpoints = new ArrayList<>();
+        if (lastModified != 0) {
+            try {
+                endpoints.addAll(objectMapper.readValue(OVERRIDE_PATH.toFile(), ZigBeeRequireEndpoints.class).getZigBeeRequireEndpoints());
+                log.info("Loaded {} zigbee device properties from <{}>", endpoints.size(), OVERRIDE_PATH);
+            } catch (Exception ex) {
+                log.error("Unable to read zigbee device properties from <{}>", OVERRIDE_PATH, ex);
+            }
+        }
+        Set<String> overriddenModels = new HashSet<>();
+        endpoints.forEach(e -> overriddenModels.add(e.getModelId()));
+        for (ZigBeeRequireEndpoint bundledEndpoint : BUNDLED_ENDPOINTS) {
+            if (!overriddenModels.contains(bundledEndpoint.getModelId())) {
+                endpoints.add(bundledEndpoint);
+            }
+        }
+
+        this.index = new Index(endpoints);
+        this.zigBeeRequireEndpoints = Collections.unmodifiableList(endpoints);
+    }
+
+    private static String toKey(int endpoint, int inputCluster, String typeId) {
+        return endpoint + "/" + inputCluster + "/" + typeId;
+    }
+
+    private static class Index {
+        private final List<ZigBeeRequireEndpoint> endpoints;
+        // model may be described by several catalogue entries, in catalogue order
+        private final Map<String, List<ZigBeeRequireEndpoint>> byModelId = new HashMap<>();
+
+        // bit number for each distinct required (endpoint, cluster, type)
+        private final Map<String, Integer> requireEndpointBits = new HashMap<>();
+        // catalogue positions which require specific bit
+        private final List<List<Integer>> bitPostings = new ArrayList<>();
+        private final int[] requireBitCount;
+        // first catalogue position which has empty require list, such entry matches any node
+        private int firstUnconditional = Integer.MAX_VALUE;
+
+        Index(List<ZigBeeRequireEndpoint> endpoints) {
+            this.endpoints = endpoints;
+            this.requireBitCount = new int[endpoints.size()];
+            for (int i = 0; i < endpoints.size(); i++) {
+                ZigBeeRequireEndpoint endpoint = endpoints.get(i);
+                byModelId.computeIfAbsent(endpoint.getModelId(), m -> new ArrayList<>()).add(endpoint);
+                if (endpoint.getRequireEndpoints() == null) {
+                    continue;
+                }
+                BitSet requireBits = new BitSet();
+                for (RequireEndpoint requireEndpoint : endpoint.getRequireEndpoints()) {
+                    String key = toKey(requireEndpoint.getEndpoint(), requireEndpoint.getInputCluster(), requireEndpoint.getTypeId());
+                    requireBits.set(requireEndpointBits.computeIfAbsent(key, k -> {
+                        bitPostings.add(new ArrayList<>());
+                        return bitPostings.size() - 1;
+                    }));
+                }
+                requireBitCount[i] = requireBits.cardinality();
+                if (requireBitCount[i] == 0) {
+                    firstUnconditional = Math.min(firstUnconditional, i);
+                }
+                for (int bit = requireBits.nextSetBit(0); bit >= 0; bit = requireBits.nextSetBit(bit + 1)) {
+                    bitPostings.get(bit).add(i);
+                }
+            }
+        }
+
+        List<ZigBeeRequireEndpoint> getByModelId(String modelId) {
+            return modelId == null ? Collections.emptyList() : byModelId.getOrDefault(modelId, Collections.emptyList());
+        }
+
+        ZigBeeRequireEndpoint findByChannels(Collection<ZigBeeNodeDescription.ChannelDescription> channels) {
+            if (channels == null) {
+                return null;
+            }
+            BitSet nodeBits = new BitSet();
+            for (ZigBeeNodeDescription.ChannelDescription channel : channels) {
+                Integer bit = requireEndpointBits.get(toKey(channel.getChannelUUID().getEndpointId(),
+                        channel.getChannelUUID().getClusterId(), channel.getChannelUUID().getClusterName()));
+                if (bit != null) {
+                    nodeBits.set(bit);
+                }
+            }
+            // entry matches when node has all its required bits; keep catalogue order as priority
+            int found = firstUnconditional;
+            int[] hits = new int[requireBitCount.length];
+            for (int bit = nodeBits.nextSetBit(0); bit >= 0; bit = nodeBits.nextSetBit(bit + 1)) {
+                for (int position : bitPostings.get(bit)) {
+                    if (++hits[position] == requireBitCount[position] && position < found) {
+                        found = position;
+                    }
+                }
+            }
+            return found == Integer.MAX_VALUE ? null : endpoints.get(found);
+        }
+    }
 }
@@ -18,6 +18,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
@@ -42,6 +43,8 @@ public final class ZigBeeDeviceUpdateValueListener implements WorkspaceEventList
 
     private final Map<String, Holder> warehouse = new HashMap<>();
 
+    private final List<Consumer<ScratchDeviceState>> stateListeners = new CopyOnWriteArrayList<>();
+
     public void updateValue(ZigBeeDevice zigBeeDevice, ZigBeeDeviceStateUUID uuid, State state, boolean pooling) {
         String ieeeAddress = uuid.getIeeeAddress();
         lastDeviceStates.putIfAbsent(ieeeAddress, new HashMap<>());
@@ -50,6 +53,10 @@ public final class ZigBeeDeviceUpdateValueListener implements WorkspaceEventList
         ScratchDeviceState scratchDeviceState = new ScratchDeviceState(zigBeeDevice, uuid, state);
         deviceStates.put(uuid, scratchDeviceState);
 
+        for (Consumer<ScratchDeviceState> stateListener : stateListeners) {
+            stateListener.accept(scratchDeviceState);
+        }
+
         // update links
         LinkDescription linkDescription = linkListeners.get(uuid);
         if (linkDescription != null) {
@@ -158,6 +165,13 @@ public final class ZigBeeDeviceUpdateValueListener implements WorkspaceEventList
         holder.deviceListeners.get(zigBeeDeviceStateUUID).add(listener);
     }
 
+    /**
+     * Listen all device state updates
+     */
+    public void addStateListener(Consumer<ScratchDeviceState> listener) {
+        stateListeners.add(listener);
+    }
+
     public void addIeeeAddressListener(String ieeeAddress, Consumer<ScratchDeviceState> listener) {
         ieeeAddressListeners.putIfAbsent(ieeeAddress, new ArrayList<>());
         ieeeAddressListeners.get(ieeeAddress).add(listener);